@@ -0,0 +1,35 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.3"
+}
+
+dependencies {
+    jmh(project(":bot"))
+    jmh(project(":discord-connector"))
+    jmh("io.github.twonirwana:dice-evaluator:v0.11.0")
+    jmh(libs.avaje.config)
+    jmh(libs.guava)
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(25))
+    }
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+// ./gradlew :benchmark:jmh -PjmhIncludes=CachingDiceEvaluatorBenchmark
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes").toString())
+    }
+}
@@ -0,0 +1,57 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.command.AnswerFormatType;
+import de.janno.discord.bot.command.RollAnswer;
+import de.janno.discord.bot.command.RollAnswerConverter;
+import de.janno.discord.bot.dice.CachingDiceEvaluator;
+import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.image.DiceImageStyle;
+import de.janno.discord.bot.dice.image.DiceStyleAndColor;
+import de.janno.discord.connector.api.message.EmbedOrMessageDefinition;
+import de.janno.evaluator.dice.random.RandomNumberSupplier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of the roll answer and its conversion into the discord message for each answer format, without dice images.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnswerBenchmark {
+
+    private static final DiceStyleAndColor NO_IMAGE = new DiceStyleAndColor(DiceImageStyle.none, DiceImageStyle.none.getDefaultColor());
+
+    @Param({"full", "without_expression", "only_result", "only_dice", "compact", "minimal"})
+    private AnswerFormatType answerFormatType;
+
+    private DiceEvaluatorAdapter diceEvaluatorAdapter;
+    private List<String> expressions;
+    private List<RollAnswer> answers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        expressions = PresetCorpus.expressions();
+        diceEvaluatorAdapter = new DiceEvaluatorAdapter(new CachingDiceEvaluator(new RandomNumberSupplier()));
+        answers = expressions.stream()
+                .map(this::answer)
+                .toList();
+    }
+
+    private RollAnswer answer(String expression) {
+        return diceEvaluatorAdapter.answerRollWithGivenLabel(expression, null, false, answerFormatType, NO_IMAGE, Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public RollAnswer answerRoll(ExpressionIndex index) {
+        return answer(index.next(expressions));
+    }
+
+    @Benchmark
+    public EmbedOrMessageDefinition toEmbedOrMessageDefinition(ExpressionIndex index) {
+        return RollAnswerConverter.toEmbedOrMessageDefinition(index.next(answers));
+    }
+}
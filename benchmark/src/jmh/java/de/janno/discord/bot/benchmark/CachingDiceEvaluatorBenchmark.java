@@ -0,0 +1,42 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.dice.CachingDiceEvaluator;
+import de.janno.discord.bot.dice.RollerOrError;
+import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.RollResult;
+import de.janno.evaluator.dice.random.RandomNumberSupplier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup of the cached roller and the roll of the preset expressions. The cache is filled in the setup, so the
+ * benchmark measures the cache hit path that is used by nearly all interactions. The roll goes through the roll
+ * executor like the answer of a roll.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CachingDiceEvaluatorBenchmark {
+
+    private CachingDiceEvaluator cachingDiceEvaluator;
+    private List<String> expressions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        expressions = PresetCorpus.expressions();
+        cachingDiceEvaluator = new CachingDiceEvaluator(new RandomNumberSupplier());
+        expressions.forEach(cachingDiceEvaluator::get);
+    }
+
+    @Benchmark
+    public RollerOrError get(ExpressionIndex index) {
+        return cachingDiceEvaluator.get(index.next(expressions));
+    }
+
+    @Benchmark
+    public RollResult getAndRoll(ExpressionIndex index) throws ExpressionException {
+        return cachingDiceEvaluator.roll(cachingDiceEvaluator.get(index.next(expressions)), List.of());
+    }
+}
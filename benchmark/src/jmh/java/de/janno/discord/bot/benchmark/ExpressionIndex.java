@@ -0,0 +1,20 @@
+package de.janno.discord.bot.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Cycles through a list of inputs, one index per benchmark thread
+ */
+@State(Scope.Thread)
+public class ExpressionIndex {
+
+    private int index;
+
+    <T> T next(List<T> values) {
+        index = (index + 1) % values.size();
+        return values.get(index);
+    }
+}
@@ -0,0 +1,103 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.dice.CachingDiceEvaluator;
+import de.janno.discord.bot.dice.image.DiceImageStyle;
+import de.janno.discord.bot.dice.image.DiceStyleAndColor;
+import de.janno.discord.bot.dice.image.ImageResultCreator;
+import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.RollResult;
+import de.janno.evaluator.dice.random.RandomNumberSupplier;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Image of a roll including the png encoding. Cold starts without the image cache folder and doesn't write into it, so
+ * each image is drawn. Warm uses the images that are written into the cache folder in the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImageResultCreatorBenchmark {
+
+    private static final int ROLLS_PER_EXPRESSION = 10;
+    private static final Path CACHE_FOLDER = Path.of("imageCache");
+
+    @Param({"polyhedral_3d", "polyhedral_2d", "d6_dots"})
+    private DiceImageStyle diceImageStyle;
+
+    private DiceStyleAndColor diceStyleAndColor;
+    private List<RollResult> rollResults;
+    private ImageResultCreator cold;
+    private ImageResultCreator warm;
+
+    private static void deleteCacheFolder() {
+        if (!Files.exists(CACHE_FOLDER)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(CACHE_FOLDER)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readAll(Supplier<? extends InputStream> image) {
+        if (image == null) {
+            return null;
+        }
+        try (InputStream inputStream = image.get()) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws ExpressionException {
+        diceStyleAndColor = new DiceStyleAndColor(diceImageStyle, diceImageStyle.getDefaultColor());
+        CachingDiceEvaluator cachingDiceEvaluator = new CachingDiceEvaluator(new RandomNumberSupplier());
+        rollResults = new ArrayList<>();
+        for (String expression : PresetCorpus.expressions()) {
+            for (int i = 0; i < ROLLS_PER_EXPRESSION; i++) {
+                rollResults.add(cachingDiceEvaluator.roll(cachingDiceEvaluator.get(expression), List.of()));
+            }
+        }
+        deleteCacheFolder();
+        //no roll has less than one combination, so nothing is written into the cache
+        cold = new ImageResultCreator(0);
+        warm = new ImageResultCreator(Integer.MAX_VALUE);
+        rollResults.forEach(rollResult -> readAll(warm.getImageForRoll(rollResult, diceStyleAndColor)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteCacheFolder();
+    }
+
+    @Benchmark
+    public byte[] cold(ExpressionIndex index) {
+        return readAll(cold.getImageForRoll(index.next(rollResults), diceStyleAndColor));
+    }
+
+    @Benchmark
+    public byte[] warm(ExpressionIndex index) {
+        return readAll(warm.getImageForRoll(index.next(rollResults), diceStyleAndColor));
+    }
+}
@@ -0,0 +1,102 @@
+package de.janno.discord.bot.benchmark;
+
+import com.google.common.hash.Hashing;
+import de.janno.discord.bot.dice.image.FileImageStore;
+import de.janno.discord.bot.dice.image.ImageStore;
+import de.janno.discord.bot.dice.image.PackImageStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Lookup of stored images and the start of a store with the stored images, for the file per image and the pack store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageStoreBenchmark {
+
+    private static final String FOLDER = "d6_dots_white";
+    private static final int IMAGE_BYTES = 8 * 1024;
+
+    @Param({"file", "pack"})
+    private String store;
+
+    @Param({"10000"})
+    private int images;
+
+    private Path root;
+    private ImageStore imageStore;
+    private List<String> hashNames;
+
+    private static void deleteFolder(Path folder) {
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Includes the migration, which opens the packs, like the start of the image writer thread
+     */
+    private ImageStore createStore() {
+        final ImageStore imageStore = switch (store) {
+            case "file" -> new FileImageStore(root, List.of(FOLDER));
+            case "pack" -> new PackImageStore(root, List.of(FOLDER));
+            default -> throw new IllegalArgumentException(store);
+        };
+        imageStore.migrate();
+        return imageStore;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("imageStoreBenchmark");
+        imageStore = createStore();
+        hashNames = new ArrayList<>();
+        Random random = new Random(0);
+        for (int i = 0; i < images; i++) {
+            String name = "image %d".formatted(i);
+            String hashName = Hashing.sha256().hashInt(i).toString();
+            byte[] imageBytes = new byte[IMAGE_BYTES];
+            random.nextBytes(imageBytes);
+            imageStore.put(FOLDER, hashName, name, imageBytes);
+            hashNames.add(hashName);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteFolder(root);
+    }
+
+    @Benchmark
+    public byte[] get(ExpressionIndex index) {
+        return imageStore.get(FOLDER, index.next(hashNames));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public ImageStore start() {
+        return createStore();
+    }
+}
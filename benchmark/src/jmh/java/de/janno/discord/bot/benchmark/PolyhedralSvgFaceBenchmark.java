@@ -0,0 +1,37 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.dice.image.provider.PolyhedralSvgWithColor;
+import io.avaje.config.Config;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Face of a d20 of the svg style. Without the face cache each face is transcoded by Batik.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PolyhedralSvgFaceBenchmark {
+
+    @Param({"0", "1000"})
+    private String faceCacheSize;
+
+    private PolyhedralSvgWithColor polyhedralSvgWithColor;
+    private List<Integer> values;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Config.setProperty("imageCache.faces.maxSize", faceCacheSize);
+        polyhedralSvgWithColor = new PolyhedralSvgWithColor();
+        values = IntStream.rangeClosed(1, 20).boxed().toList();
+    }
+
+    @Benchmark
+    public List<BufferedImage> getImageFor(ExpressionIndex index) {
+        return polyhedralSvgWithColor.getImageFor(20, index.next(values), PolyhedralSvgWithColor.RED);
+    }
+}
@@ -0,0 +1,34 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.command.ButtonIdLabelAndDiceExpression;
+import de.janno.discord.bot.command.customDice.CustomDiceConfig;
+import de.janno.discord.bot.command.help.RpgSystemCommandPreset;
+import de.janno.discord.bot.dice.CachingDiceEvaluator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The button expressions of the custom dice presets, as a realistic set of expressions that are rolled by the users.
+ * Presets with parameters or aliases are not included, because their expressions are only complete after the user
+ * input.
+ */
+final class PresetCorpus {
+
+    private PresetCorpus() {
+    }
+
+    static List<String> expressions() {
+        final CachingDiceEvaluator validator = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+        return Arrays.stream(RpgSystemCommandPreset.PresetId.values())
+                .map(presetId -> RpgSystemCommandPreset.createConfig(presetId, Locale.ENGLISH))
+                .filter(CustomDiceConfig.class::isInstance)
+                .map(CustomDiceConfig.class::cast)
+                .flatMap(config -> config.getButtonIdLabelAndDiceExpressions().stream())
+                .map(ButtonIdLabelAndDiceExpression::getDiceExpression)
+                .distinct()
+                .filter(expression -> validator.get(expression).isValid())
+                .toList();
+    }
+}
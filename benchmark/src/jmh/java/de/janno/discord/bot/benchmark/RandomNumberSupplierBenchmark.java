@@ -0,0 +1,81 @@
+package de.janno.discord.bot.benchmark;
+
+import de.janno.discord.bot.dice.SplitRandomNumberSupplier;
+import de.janno.evaluator.dice.DieId;
+import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.random.NumberSupplier;
+import de.janno.evaluator.dice.random.RandomNumberSupplier;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared random number supplier compared with a generator per thread, with the number of threads of a small,
+ * a typical and a busy bot instance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RandomNumberSupplierBenchmark {
+
+    private static final DieId DIE_ID = DieId.of(1, "d", 0, 0, 0);
+
+    private NumberSupplier shared;
+    private NumberSupplier perThread;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        shared = new RandomNumberSupplier();
+        perThread = SplitRandomNumberSupplier.create();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int shared_1(DieIndex die) throws ExpressionException {
+        return shared.get(0, die.nextSides(), DIE_ID);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int shared_8(DieIndex die) throws ExpressionException {
+        return shared.get(0, die.nextSides(), DIE_ID);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int shared_32(DieIndex die) throws ExpressionException {
+        return shared.get(0, die.nextSides(), DIE_ID);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int perThread_1(DieIndex die) throws ExpressionException {
+        return perThread.get(0, die.nextSides(), DIE_ID);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int perThread_8(DieIndex die) throws ExpressionException {
+        return perThread.get(0, die.nextSides(), DIE_ID);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int perThread_32(DieIndex die) throws ExpressionException {
+        return perThread.get(0, die.nextSides(), DIE_ID);
+    }
+
+    /**
+     * The common die sizes, so the bound of the generator is not constant
+     */
+    @State(Scope.Thread)
+    public static class DieIndex {
+        private static final int[] SIDES = {4, 6, 8, 10, 12, 20, 100};
+        private int index;
+
+        int nextSides() {
+            index = (index + 1) % SIDES.length;
+            return SIDES[index];
+        }
+    }
+}
@@ -13,6 +13,7 @@ dependencies {
     compileOnly(libs.lombok)
     annotationProcessor(libs.lombok)
     implementation(libs.guava)
+    implementation("com.github.ben-manes.caffeine:caffeine:3.2.2")
     implementation(libs.micrometer.core)
     implementation(libs.commons.lang3)
     implementation(libs.commons.text)
@@ -21,6 +22,7 @@ dependencies {
     implementation(libs.emoji)
     implementation("io.micrometer:micrometer-registry-prometheus:1.17.0")
     implementation("com.h2database:h2:2.4.240")
+    implementation("com.zaxxer:HikariCP:7.0.2")
     implementation("org.apache.derby:derby:10.17.1.0")
     implementation("org.apache.derby:derbyclient:10.17.1.0")
     implementation("tools.jackson.dataformat:jackson-dataformat-yaml:3.2.1")
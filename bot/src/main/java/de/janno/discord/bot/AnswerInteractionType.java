@@ -3,5 +3,7 @@ package de.janno.discord.bot;
 public enum AnswerInteractionType {
     none,
     //hidden,
-    reroll
+    reroll,
+    //the distribution of the expression instead of a roll
+    stats
 }
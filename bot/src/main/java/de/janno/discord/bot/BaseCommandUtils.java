@@ -10,7 +10,7 @@ import java.util.UUID;
 public class BaseCommandUtils {
 
     /**
-     * Create a new message data with empty state, delete other states for this and save it
+     * Create a new message data with empty state and replace other states for this message with it
      */
     public static MessageDataDTO createCleanupAndSaveEmptyMessageData(@NonNull UUID configUUID,
                                                                       Long guildId,
@@ -18,10 +18,17 @@ public class BaseCommandUtils {
                                                                       long messageId,
                                                                       String commandId,
                                                                       PersistenceManager persistenceManager) {
-        MessageDataDTO messageDataDTO = new MessageDataDTO(configUUID, guildId, channelId, messageId, commandId, Mapper.NO_PERSISTED_STATE, null);
-        //should not be needed but sometimes there is a retry and then there is already a state
-        persistenceManager.deleteStateForMessage(channelId, messageId);
-        persistenceManager.saveMessageData(messageDataDTO);
+        MessageDataDTO messageDataDTO = createEmptyMessageData(configUUID, guildId, channelId, messageId, commandId);
+        //upsert should not be needed but sometimes there is a retry and then there is already a state
+        persistenceManager.upsertMessageData(messageDataDTO);
         return messageDataDTO;
     }
+
+    public static MessageDataDTO createEmptyMessageData(@NonNull UUID configUUID,
+                                                        Long guildId,
+                                                        long channelId,
+                                                        long messageId,
+                                                        String commandId) {
+        return new MessageDataDTO(configUUID, guildId, channelId, messageId, commandId, Mapper.NO_PERSISTED_STATE, null);
+    }
 }
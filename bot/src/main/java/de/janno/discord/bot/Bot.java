@@ -19,13 +19,16 @@ import de.janno.discord.bot.command.help.RpgSystemCommandPreset;
 import de.janno.discord.bot.command.help.WelcomeCommand;
 import de.janno.discord.bot.command.reroll.RerollAnswerHandler;
 import de.janno.discord.bot.command.starter.StarterCommand;
+import de.janno.discord.bot.command.stats.StatsCommand;
 import de.janno.discord.bot.command.sumCustomSet.SumCustomSetCommand;
 import de.janno.discord.bot.dice.CachingDiceEvaluator;
+import de.janno.discord.bot.dice.SplitRandomNumberSupplier;
 import de.janno.discord.bot.persistance.PersistenceManager;
 import de.janno.discord.bot.persistance.PersistenceManagerImpl;
 import de.janno.discord.connector.DiscordConnectorImpl;
 import de.janno.discord.connector.api.ChildrenChannelCreationEvent;
 import de.janno.discord.connector.api.DatabaseConnector;
+import de.janno.evaluator.dice.random.NumberSupplier;
 import de.janno.evaluator.dice.random.RandomNumberSupplier;
 import io.avaje.config.Config;
 import lombok.extern.slf4j.Slf4j;
@@ -54,7 +57,8 @@ public class Bot {
         final String password = Config.getNullable("db.password");
         PersistenceManager persistenceManager = new PersistenceManagerImpl(url, user, password);
 
-        CachingDiceEvaluator cachingDiceEvaluator = new CachingDiceEvaluator(new RandomNumberSupplier());
+        final NumberSupplier numberSupplier = Config.getBool("diceEvaluator.random.perThread", false) ? SplitRandomNumberSupplier.create() : new RandomNumberSupplier();
+        CachingDiceEvaluator cachingDiceEvaluator = new CachingDiceEvaluator(numberSupplier);
 
         CustomDiceCommand customDiceCommand = new CustomDiceCommand(persistenceManager, cachingDiceEvaluator);
         CustomParameterCommand customParameterCommand = new CustomParameterCommand(persistenceManager, cachingDiceEvaluator);
@@ -72,6 +76,7 @@ public class Bot {
                         new AliasRollCommand(persistenceManager, cachingDiceEvaluator),
                         hiddenDirectRollCommand,
                         new ValidationCommand(persistenceManager, cachingDiceEvaluator),
+                        new StatsCommand(cachingDiceEvaluator),
                         channelConfigCommand,
                         sumCustomSetCommand,
                         customParameterCommand,
@@ -94,7 +99,15 @@ public class Bot {
                 new DatabaseConnector() {
                     @Override
                     public void markDataOfMissingGuildsToDelete(Set<Long> allGuildIdsAtStartup) {
-                        markAlreadyLeavedGuildsAsDeleted(persistenceManager, allGuildIdsAtStartup);
+                        //the marking can take a while and should not block the startup
+                        final Set<Long> guildIdsAtStartup = Set.copyOf(allGuildIdsAtStartup);
+                        Thread.ofVirtual().name("markLeavedGuilds").start(() -> {
+                            try {
+                                markAlreadyLeavedGuildsAsDeleted(persistenceManager, guildIdsAtStartup);
+                            } catch (Exception e) {
+                                log.error("Error while marking the data of left guilds", e);
+                            }
+                        });
                     }
 
                     @Override
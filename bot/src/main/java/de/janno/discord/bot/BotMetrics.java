@@ -7,6 +7,7 @@ import de.janno.discord.bot.command.AnswerFormatType;
 import de.janno.discord.bot.command.channelConfig.Alias;
 import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import io.avaje.config.Config;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
@@ -30,8 +31,14 @@ public class BotMetrics {
     private final static String METRIC_PREFIX = "dice.";
     private final static String METRIC_BUTTON_PREFIX = "buttonEvent";
     private final static String METRIC_DATABASE_PREFIX = "database";
+    private final static String METRIC_REACTIVE_DATABASE_PREFIX = "reactiveDatabase";
+    private final static String METRIC_PURGE_ROWS_PREFIX = "purgedRows";
     private final static String METRIC_ANSWER_DELAY_PREFIX = "answerDelayDuration";
     private final static String METRIC_IMAGE_CREATION_DURATION_PREFIX = "imageCreationDuration";
+    private final static String METRIC_HISTOGRAM_CREATION_DURATION_PREFIX = "histogramCreationDuration";
+    private final static String METRIC_DICE_CACHE_WARM_UP_PREFIX = "diceCacheWarmUp";
+    private final static String METRIC_ROLL_BUDGET_EXCEEDED_PREFIX = "rollBudgetExceeded";
+    private final static String METRIC_BATCH_ROLL_PREFIX = "batchRoll";
     private final static String METRIC_IS_DELAYED_PREFIX = "answerIsDelayed";
     private final static String METRIC_LEGACY_BUTTON_PREFIX = "legacyButtonEvent";
     private final static String METRIC_LEGACY_COMMAND_BUTTON_PREFIX = "legacyCommandButtonEvent";
@@ -42,6 +49,7 @@ public class BotMetrics {
     private final static String METRIC_SAVE_CONFIG_PREFIX = "savedConfig";
     private final static String METRIC_IMAGE_RESULT_PREFIX = "imageResult";
     private final static String METRIC_USE_IMAGE_RESULT_PREFIX = "useImageResult";
+    private final static String METRIC_IMAGE_CACHE_TIER_PREFIX = "imageCacheTier";
     private final static String METRIC_AUTOCOMPLETE_VALID_PREFIX = "autoCompleteValid";
     private final static String METRIC_INVALID_PREFIX = "invalid";
     private final static String METRIC_GUILD_NULL_PREFIX = "guildNull";
@@ -62,7 +70,11 @@ public class BotMetrics {
     private final static String EXPRESSION_TAG = "expression";
     private final static String ANSWER_FORMAT_TAG = "answerFormat";
     private final static String ACTION_TAG = "action";
+    private final static String TABLE_TAG = "table";
     private final static String DELAYED_TAG = "delayed";
+    private final static String COST_TAG = "cost";
+    private final static String REASON_TAG = "reason";
+    private final static String TIER_TAG = "tier";
     private static final String ANSWER_TIMER_PREFIX = "answerTimer";
     private static final String ACK_START_TIMER_PREFIX = "acknowledgeStartTimer";
     private static final String ACK_FINISHED_TIMER_PREFIX = "acknowledgeFinishedTimer";
@@ -148,6 +160,10 @@ public class BotMetrics {
         globalRegistry.counter(METRIC_PREFIX + METRIC_IMAGE_RESULT_PREFIX, Tags.of(CACHE_TAG, tag.name())).increment();
     }
 
+    public static void incrementImageCacheTierMetricCounter(@NonNull ImageCacheTier tier, @NonNull CacheTag tag) {
+        globalRegistry.counter(METRIC_PREFIX + METRIC_IMAGE_CACHE_TIER_PREFIX, Tags.of(TIER_TAG, tier.name(), CACHE_TAG, tag.name())).increment();
+    }
+
 
     public static void incrementUseImageResultMetricCounter(@NonNull DiceStyleAndColor resultImage) {
         globalRegistry.counter(METRIC_PREFIX + METRIC_USE_IMAGE_RESULT_PREFIX, Tags.of(IMAGE_RESULT_TAG, resultImage.toString())).increment();
@@ -167,6 +183,26 @@ public class BotMetrics {
                 .record(duration);
     }
 
+    /**
+     * @param type queue for the time waiting for a free database worker, execution for the time of the database call
+     */
+    public static void reactiveDatabaseTimer(@NonNull String action, @NonNull String type, @NonNull Duration duration) {
+        Timer.builder(METRIC_PREFIX + METRIC_REACTIVE_DATABASE_PREFIX)
+                .tags(Tags.of(ACTION_TAG, action, TYPE_TAG, type))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram(true)
+                .register(globalRegistry)
+                .record(duration);
+    }
+
+    public static void purgedRowsSummary(@NonNull String table, long rows) {
+        DistributionSummary.builder(METRIC_PREFIX + METRIC_PURGE_ROWS_PREFIX)
+                .tags(Tags.of(TABLE_TAG, table))
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(globalRegistry)
+                .record(rows);
+    }
+
     public static void delayTimer(@NonNull String commandName, @NonNull Duration duration) {
         Timer.builder(METRIC_PREFIX + METRIC_ANSWER_DELAY_PREFIX)
                 .tags(Tags.of(COMMAND_TAG, commandName))
@@ -184,6 +220,29 @@ public class BotMetrics {
                 .record(duration);
     }
 
+    public static void histogramCreationTimer(@NonNull Duration duration) {
+        Timer.builder(METRIC_PREFIX + METRIC_HISTOGRAM_CREATION_DURATION_PREFIX)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram(true)
+                .register(globalRegistry)
+                .record(duration);
+    }
+
+    public static void diceCacheWarmUpTimer(@NonNull Duration duration) {
+        Timer.builder(METRIC_PREFIX + METRIC_DICE_CACHE_WARM_UP_PREFIX)
+                .register(globalRegistry)
+                .record(duration);
+    }
+
+    public static void incrementBatchRollCounter(int count) {
+        globalRegistry.counter(METRIC_PREFIX + METRIC_BATCH_ROLL_PREFIX).increment();
+        globalRegistry.counter(METRIC_PREFIX + METRIC_BATCH_ROLL_PREFIX + "Rolls").increment(count);
+    }
+
+    public static void incrementRollBudgetExceeded(@NonNull String cost, @NonNull String reason) {
+        globalRegistry.counter(METRIC_PREFIX + METRIC_ROLL_BUDGET_EXCEEDED_PREFIX, Tags.of(COST_TAG, cost, REASON_TAG, reason)).increment();
+    }
+
     public static void incrementDelayCounter(@NonNull String commandName, boolean isDelayed) {
         globalRegistry.counter(METRIC_PREFIX + METRIC_IS_DELAYED_PREFIX, Tags.of(COMMAND_TAG, commandName, DELAYED_TAG, String.valueOf(isDelayed))).increment();
     }
@@ -257,10 +316,19 @@ public class BotMetrics {
         globalRegistry.counter(METRIC_PREFIX + "markDataAsDelete").increment(markDeleteCount);
     }
 
+    public static void incrementMarkDeleteGuilds(long guildCount) {
+        globalRegistry.counter(METRIC_PREFIX + "markDeleteGuilds").increment(guildCount);
+    }
+
     public enum CacheTag {
         CACHE_HIT,
         CACHE_MISS,
         CACHE_SKIP
     }
 
+    public enum ImageCacheTier {
+        MEMORY,
+        DISK
+    }
+
 }
@@ -9,9 +9,14 @@ import de.janno.discord.bot.BotMetrics;
 import de.janno.discord.bot.I18n;
 import de.janno.discord.bot.command.reroll.RerollAnswerHandler;
 import de.janno.discord.bot.command.starter.StarterCommand;
+import de.janno.discord.bot.command.stats.StatsCommand;
+import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.DiceStatistics;
+import de.janno.discord.bot.dice.RollBudgetExceededException;
 import de.janno.discord.bot.persistance.MessageConfigDTO;
 import de.janno.discord.bot.persistance.MessageDataDTO;
 import de.janno.discord.bot.persistance.PersistenceManager;
+import de.janno.discord.bot.persistance.ReactivePersistenceManager;
 import de.janno.discord.connector.api.BottomCustomIdUtils;
 import de.janno.discord.connector.api.ButtonEventAdaptor;
 import de.janno.discord.connector.api.ComponentCommand;
@@ -23,6 +28,7 @@ import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
@@ -40,11 +46,13 @@ import static io.micrometer.core.instrument.Metrics.globalRegistry;
 public abstract class ComponentCommandImpl<C extends RollConfig, S extends StateData> implements ComponentCommand {
 
     protected final PersistenceManager persistenceManager;
+    protected final ReactivePersistenceManager reactivePersistenceManager;
     protected final Supplier<UUID> uuidSupplier;
     private Cache<String, Boolean> concurrentRequestCache;
 
     protected ComponentCommandImpl(PersistenceManager persistenceManager, Supplier<UUID> uuidSupplier) {
         this.persistenceManager = persistenceManager;
+        this.reactivePersistenceManager = new ReactivePersistenceManager(persistenceManager);
         this.uuidSupplier = uuidSupplier;
         recreateConcurrentRequestCache();
         io.avaje.config.Config.onChange(_ -> {
@@ -211,6 +219,25 @@ public abstract class ComponentCommandImpl<C extends RollConfig, S extends State
                                                   final long userId,
                                                   final Long answerTargetChannelId,
                                                   @NonNull final ComponentInteractionContext componentInteractionContext) {
+        if (config.getAnswerInteractionType() == AnswerInteractionType.stats) {
+            final Optional<DiceStatistics> diceStatistics = getDiceStatistics();
+            final Optional<String> statsExpression = getStatsExpression(config, state, channelId, userId);
+            if (diceStatistics.isPresent() && statsExpression.isPresent()) {
+                return sendStatsAnswerMessage(event, diceStatistics.get(), statsExpression.get(), config, answerTargetChannelId, componentInteractionContext,
+                        () -> sendRollAnswerMessage(event, config, state, guildId, channelId, userId, answerTargetChannelId, componentInteractionContext));
+            }
+        }
+        return sendRollAnswerMessage(event, config, state, guildId, channelId, userId, answerTargetChannelId, componentInteractionContext);
+    }
+
+    private @NonNull Mono<Void> sendRollAnswerMessage(@NonNull final ButtonEventAdaptor event,
+                                                      @NonNull final C config,
+                                                      @NonNull final State<S> state,
+                                                      final Long guildId,
+                                                      final long channelId,
+                                                      final long userId,
+                                                      final Long answerTargetChannelId,
+                                                      @NonNull final ComponentInteractionContext componentInteractionContext) {
         final Optional<RollAnswer> answer = getAnswer(config, state, channelId, userId);
         if (answer.isPresent()) {
             BotMetrics.incrementAnswerFormatCounter(config.getAnswerFormatType(), getCommandId());
@@ -231,6 +258,40 @@ public abstract class ComponentCommandImpl<C extends RollConfig, S extends State
         return Mono.empty();
     }
 
+    /**
+     * Answers with the distribution of the expression, without rolling it. The simulation runs outside the event thread.
+     * An invalid expression is answered by the roll answer, because it contains the error message.
+     */
+    private @NonNull Mono<Void> sendStatsAnswerMessage(@NonNull final ButtonEventAdaptor event,
+                                                       @NonNull final DiceStatistics diceStatistics,
+                                                       @NonNull final String statsExpression,
+                                                       @NonNull final C config,
+                                                       final Long answerTargetChannelId,
+                                                       @NonNull final ComponentInteractionContext componentInteractionContext,
+                                                       @NonNull final Supplier<Mono<Void>> invalidExpressionAnswer) {
+        final String expression = StatsCommand.getSingleExpression(statsExpression);
+        final Locale locale = config.getConfigLocale();
+        return Mono.fromCallable(() -> diceStatistics.getRollerOrError(expression))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(rollerOrError -> {
+                    if (!rollerOrError.isValid()) {
+                        return Mono.just(Optional.<EmbedOrMessageDefinition>empty());
+                    }
+                    BotMetrics.incrementAnswerFormatCounter(config.getAnswerFormatType(), getCommandId());
+                    componentInteractionContext.setAnswerText(expression);
+                    return Mono.fromCallable(() -> Optional.of(StatsCommand.createAnswer(expression, diceStatistics.getStatistics(rollerOrError), locale)));
+                })
+                .onErrorResume(RollBudgetExceededException.class, e -> Mono.just(Optional.of(EmbedOrMessageDefinition.builder()
+                        .descriptionOrContent(DiceEvaluatorAdapter.getBudgetExceededMessage(e, locale))
+                        .type(EmbedOrMessageDefinition.Type.MESSAGE)
+                        .build())))
+                .flatMap(answerMessage -> answerMessage
+                        .map(m -> event.sendMessage(m.toBuilder().sendToOtherChannelId(answerTargetChannelId).build())
+                                .then()
+                                .doOnSuccess(_ -> componentInteractionContext.stopAnswer()))
+                        .orElseGet(invalidExpressionAnswer));
+    }
+
     /**
      * Sends a new button message if needed. If a new button message was send then it returns true otherwise false
      */
@@ -245,7 +306,8 @@ public abstract class ComponentCommandImpl<C extends RollConfig, S extends State
 
         if (answerTargetChannelId == null) {
             return Mono.defer(() -> event.sendMessage(newButtonMessage)
-                    .doOnNext(newMessageId -> createEmptyMessageData(configUUID, guildId, channelId, newMessageId))
+                    .flatMap(newMessageId -> reactivePersistenceManager.execute("createEmptyMessageData", () -> createEmptyMessageData(configUUID, guildId, channelId, newMessageId))
+                            .thenReturn(newMessageId))
                     .doOnNext(_ -> componentInteractionContext.stopNewButton())
                     .delaySubscription(calculateDelay(event)));
         }
@@ -262,11 +324,11 @@ public abstract class ComponentCommandImpl<C extends RollConfig, S extends State
                                                           final Long answerTargetChannelId,
                                                           final long newButtonMessageId) {
 
-        return Mono.defer(() -> MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, newButtonMessageId, event.getMessageId(), configUUID, channelId, event))
+        return Mono.defer(() -> MessageDeletionHelper.deleteOldMessageAndData(reactivePersistenceManager, newButtonMessageId, event.getMessageId(), configUUID, channelId, event))
                 .then(Mono.defer(() -> {
                     if (answerTargetChannelId == null && !shouldKeepExistingButtonMessage(event)) {
                         return Mono.defer(() -> event.deleteMessageById(eventMessageId))
-                                .then(Mono.defer(() -> MessageDeletionHelper.markAsDeleted(persistenceManager, channelId, eventMessageId)));
+                                .then(Mono.defer(() -> MessageDeletionHelper.markAsDeleted(reactivePersistenceManager, channelId, eventMessageId)));
                     } else {
                         return Mono.empty();
                     }
@@ -335,6 +397,20 @@ public abstract class ComponentCommandImpl<C extends RollConfig, S extends State
     protected abstract @NonNull Optional<RollAnswer> getAnswer(C config, State<S> state, long channelId,
                                                                long userId);
 
+    /**
+     * The statistics for the stats answer interaction, empty if the command can't answer with the distribution
+     */
+    protected @NonNull Optional<DiceStatistics> getDiceStatistics() {
+        return Optional.empty();
+    }
+
+    /**
+     * The expression, with applied aliases, of the stats answer interaction. Empty if the state has nothing to roll.
+     */
+    protected @NonNull Optional<String> getStatsExpression(C config, State<S> state, long channelId, long userId) {
+        return Optional.empty();
+    }
+
     /**
      * update the saved state if the current button message is not deleted. StateData need to be set to null if the there is an answer message
      */
@@ -11,12 +11,12 @@ import de.janno.discord.bot.command.sumCustomSet.SumCustomSetCommand;
 import de.janno.discord.bot.command.sumCustomSet.SumCustomSetConfig;
 import de.janno.discord.bot.persistance.MessageConfigDTO;
 import de.janno.discord.bot.persistance.PersistenceManager;
+import de.janno.discord.bot.persistance.ReactivePersistenceManager;
 import de.janno.discord.connector.api.SlashCommand;
 import de.janno.discord.connector.api.SlashEventAdaptor;
 import de.janno.discord.connector.api.message.EmbedOrMessageDefinition;
 import de.janno.discord.connector.api.slash.CommandDefinition;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -27,14 +27,25 @@ import java.util.*;
 import java.util.function.Supplier;
 
 @Slf4j
-@RequiredArgsConstructor
 public class FetchCommand implements SlashCommand {
 
     private final PersistenceManager persistenceManager;
+    private final ReactivePersistenceManager reactivePersistenceManager;
     private final CustomParameterCommand customParameterCommand;
     private final CustomDiceCommand customDiceCommand;
     private final SumCustomSetCommand sumCustomSetCommand;
 
+    public FetchCommand(PersistenceManager persistenceManager,
+                        CustomParameterCommand customParameterCommand,
+                        CustomDiceCommand customDiceCommand,
+                        SumCustomSetCommand sumCustomSetCommand) {
+        this.persistenceManager = persistenceManager;
+        this.reactivePersistenceManager = new ReactivePersistenceManager(persistenceManager);
+        this.customParameterCommand = customParameterCommand;
+        this.customDiceCommand = customDiceCommand;
+        this.sumCustomSetCommand = sumCustomSetCommand;
+    }
+
     @Override
     public @NonNull String getCommandId() {
         return "fetch";
@@ -81,8 +92,9 @@ public class FetchCommand implements SlashCommand {
         List<Mono<Void>> actions = List.of(
                 Mono.defer(() -> event.reply(I18n.getMessage("fetch.reply", event.getRequester().getUserLocal()), true)),
                 Mono.defer(() -> event.sendMessage(buttonMessage)
-                                .doOnNext(messageId -> BaseCommandUtils.createCleanupAndSaveEmptyMessageData(configUUID, event.getGuildId(), event.getChannelId(), messageId, getCommandId(), persistenceManager)))
-                        .flatMap(newMessageId -> MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, newMessageId, null, configUUID, event.getChannelId(), event))
+                                .flatMap(messageId -> reactivePersistenceManager.upsertMessageData(BaseCommandUtils.createEmptyMessageData(configUUID, event.getGuildId(), event.getChannelId(), messageId, getCommandId()))
+                                        .thenReturn(messageId)))
+                        .flatMap(newMessageId -> MessageDeletionHelper.deleteOldMessageAndData(reactivePersistenceManager, newMessageId, null, configUUID, event.getChannelId(), event))
                         .then());
         return Flux.merge(1, actions.toArray(new Mono<?>[0]))
                 .parallel()
@@ -0,0 +1,68 @@
+package de.janno.discord.bot.command;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import de.janno.discord.bot.persistance.Mapper;
+import de.janno.discord.bot.persistance.MessageConfigDTO;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Shared cache for deserialized roll configs. A message config is never modified after it was saved, so the yaml needs
+ * only to be parsed once. The serialized config is part of the key, so a reused config UUID can never return a stale config.
+ */
+@Slf4j
+public final class RollConfigCache {
+
+    private static Cache<ConfigKey, RollConfig> configCache = createCache();
+
+    static {
+        Config.onChange(_ -> {
+            configCache = createCache();
+            log.info("recreate roll config cache");
+        }, "command.rollConfigCache.maxWeight");
+
+        Gauge.builder("rollConfigCache", () -> configCache.size()).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("rollConfigCache", () -> configCache.stats().requestCount()).tags(Tags.of("stats", "requests")).register(globalRegistry);
+        Gauge.builder("rollConfigCache", () -> configCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("rollConfigCache", () -> configCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        Gauge.builder("rollConfigCache", () -> configCache.stats().evictionCount()).tags(Tags.of("stats", "eviction")).register(globalRegistry);
+        Gauge.builder("rollConfigCache", () -> configCache.stats().averageLoadPenalty()).tags(Tags.of("stats", "averageLoadTime")).register(globalRegistry);
+    }
+
+    private RollConfigCache() {
+    }
+
+    private static Cache<ConfigKey, RollConfig> createCache() {
+        return CacheBuilder.newBuilder()
+                //the weight is the length of the serialized config
+                .maximumWeight(Config.getLong("command.rollConfigCache.maxWeight", 20_000_000))
+                .<ConfigKey, RollConfig>weigher((key, _) -> key.config().length())
+                .recordStats()
+                .build();
+    }
+
+    public static <T extends RollConfig> T getOrDeserialize(@NonNull MessageConfigDTO messageConfigDTO, @NonNull Class<T> configClass) {
+        final ConfigKey key = new ConfigKey(messageConfigDTO.getConfigUUID(), configClass, messageConfigDTO.getConfig());
+        try {
+            return configClass.cast(configCache.get(key, () -> Mapper.deserializeObject(key.config(), configClass)));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record ConfigKey(@NonNull UUID configUUID, @NonNull Class<?> configClass, @NonNull String config) {
+    }
+}
@@ -8,6 +8,7 @@ import de.janno.discord.bot.BotMetrics;
 import de.janno.discord.bot.I18n;
 import de.janno.discord.bot.persistance.MessageConfigDTO;
 import de.janno.discord.bot.persistance.PersistenceManager;
+import de.janno.discord.bot.persistance.ReactivePersistenceManager;
 import de.janno.discord.connector.api.AutoCompleteAnswer;
 import de.janno.discord.connector.api.AutoCompleteRequest;
 import de.janno.discord.connector.api.SlashCommand;
@@ -36,9 +37,11 @@ public abstract class SlashCommandImpl<C extends RollConfig> implements SlashCom
     private static final String HELP_OPTION_NAME = "help";
 
     protected final PersistenceManager persistenceManager;
+    protected final ReactivePersistenceManager reactivePersistenceManager;
 
     protected SlashCommandImpl(PersistenceManager persistenceManager) {
         this.persistenceManager = persistenceManager;
+        this.reactivePersistenceManager = new ReactivePersistenceManager(persistenceManager);
     }
 
     @Override
@@ -167,10 +170,10 @@ public abstract class SlashCommandImpl<C extends RollConfig> implements SlashCom
             return event.reply(replayMessage, false)
                     .then(Mono.defer(() -> {
                         final Optional<MessageConfigDTO> newMessageConfig = createMessageConfig(configUUID, guildId, channelId, event.getUserId(), config);
-                        newMessageConfig.ifPresent(persistenceManager::saveMessageConfig);
-                        return event.sendMessage(createSlashResponseMessage(configUUID, config, channelId))
-                                .doOnNext(messageId -> BaseCommandUtils.createCleanupAndSaveEmptyMessageData(configUUID, guildId, channelId, messageId, getCommandId(), persistenceManager))
-                                .then();
+                        return Mono.justOrEmpty(newMessageConfig)
+                                .flatMap(reactivePersistenceManager::saveMessageConfig)
+                                .then(Mono.defer(() -> event.sendMessage(createSlashResponseMessage(configUUID, config, channelId))))
+                                .flatMap(messageId -> reactivePersistenceManager.upsertMessageData(BaseCommandUtils.createEmptyMessageData(configUUID, guildId, channelId, messageId, getCommandId())));
                     }))
                     .doAfterTerminate(() -> log.info("{}: {} in start={}ms reply={}ms",
                             event.getRequester().toLogString(),
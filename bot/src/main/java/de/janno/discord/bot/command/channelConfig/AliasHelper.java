@@ -1,23 +1,62 @@
 package de.janno.discord.bot.command.channelConfig;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import de.janno.discord.bot.BotMetrics;
 import de.janno.discord.bot.persistance.ChannelConfigDTO;
 import de.janno.discord.bot.persistance.Mapper;
 import de.janno.discord.bot.persistance.PersistenceManager;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
 
 import java.util.List;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
 @Slf4j
 public class AliasHelper {
     public static final String CHANNEL_ALIAS_CONFIG_TYPE_ID = "AliasConfig";
     public static final String USER_ALIAS_CONFIG_TYPE_ID = "UserAliasConfig";
+    /**
+     * The compiled aliases for a serialized alias config. The serialized config is the key, so a changed alias config
+     * results in a new entry and old entries are evicted over time.
+     */
+    private static LoadingCache<String, List<CompiledAlias>> compiledAliasCache = createCompiledAliasCache();
+
+    static {
+        Config.onChange(_ -> {
+            compiledAliasCache = createCompiledAliasCache();
+            log.info("recreate compiled alias cache");
+        }, "command.compiledAliasCache.maxWeight");
+        Gauge.builder("compiledAliasCache", () -> compiledAliasCache.size()).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("compiledAliasCache", () -> compiledAliasCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("compiledAliasCache", () -> compiledAliasCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        Gauge.builder("compiledAliasCache", () -> compiledAliasCache.stats().evictionCount()).tags(Tags.of("stats", "eviction")).register(globalRegistry);
+    }
+
+    private static LoadingCache<String, List<CompiledAlias>> createCompiledAliasCache() {
+        return CacheBuilder.newBuilder()
+                //the weight is the length of the serialized alias config
+                .maximumWeight(Config.getLong("command.compiledAliasCache.maxWeight", 10_000_000))
+                .<String, List<CompiledAlias>>weigher((config, _) -> config.length())
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public @NonNull List<CompiledAlias> load(@NonNull String config) {
+                        return compile(Mapper.deserializeObject(config, AliasConfig.class).getAliasList());
+                    }
+                });
+    }
 
     public static AliasConfig deserializeAliasConfig(ChannelConfigDTO channelConfigDTO) {
         Preconditions.checkArgument(CHANNEL_ALIAS_CONFIG_TYPE_ID.equals(channelConfigDTO.getConfigClassId()) || USER_ALIAS_CONFIG_TYPE_ID.equals(channelConfigDTO.getConfigClassId()), "Unknown configClassId: %s", channelConfigDTO.getConfigClassId());
@@ -25,48 +64,71 @@ public class AliasHelper {
     }
 
     public static List<Alias> getChannelAlias(long channelId, PersistenceManager persistenceManager) {
-        return persistenceManager.getChannelConfig(channelId, CHANNEL_ALIAS_CONFIG_TYPE_ID)
-                .map(AliasHelper::deserializeAliasConfig)
-                .map(AliasConfig::getAliasList)
-                .orElse(List.of());
+        return getCompiledChannelAlias(channelId, persistenceManager).stream()
+                .map(CompiledAlias::alias)
+                .toList();
     }
 
     public static List<Alias> getUserChannelAlias(long channelId, long userId, PersistenceManager persistenceManager) {
-        return persistenceManager.getUserChannelConfig(channelId, userId, USER_ALIAS_CONFIG_TYPE_ID)
-                .map(AliasHelper::deserializeAliasConfig)
-                .map(AliasConfig::getAliasList)
+        return getCompiledUserChannelAlias(channelId, userId, persistenceManager).stream()
+                .map(CompiledAlias::alias)
+                .toList();
+    }
+
+    private static List<CompiledAlias> getCompiledChannelAlias(long channelId, PersistenceManager persistenceManager) {
+        return getCompiledAlias(persistenceManager.getChannelConfig(channelId, CHANNEL_ALIAS_CONFIG_TYPE_ID));
+    }
+
+    private static List<CompiledAlias> getCompiledUserChannelAlias(long channelId, long userId, PersistenceManager persistenceManager) {
+        return getCompiledAlias(persistenceManager.getUserChannelConfig(channelId, userId, USER_ALIAS_CONFIG_TYPE_ID));
+    }
+
+    private static List<CompiledAlias> getCompiledAlias(Optional<ChannelConfigDTO> channelConfigDTO) {
+        return channelConfigDTO
+                .map(c -> {
+                    Preconditions.checkArgument(CHANNEL_ALIAS_CONFIG_TYPE_ID.equals(c.getConfigClassId()) || USER_ALIAS_CONFIG_TYPE_ID.equals(c.getConfigClassId()), "Unknown configClassId: %s", c.getConfigClassId());
+                    return compiledAliasCache.getUnchecked(c.getConfig());
+                })
                 .orElse(List.of());
     }
 
+    private static List<CompiledAlias> compile(List<Alias> aliasList) {
+        return aliasList.stream()
+                .map(CompiledAlias::of)
+                .toList();
+    }
+
     static String applyAliaseToExpression(@NonNull List<Alias> channelAlias, @NonNull List<Alias> userAlias, final String expressionWithOptionalLabel) {
+        return applyCompiledAliaseToExpression(compile(channelAlias), compile(userAlias), expressionWithOptionalLabel);
+    }
+
+    private static String applyCompiledAliaseToExpression(@NonNull List<CompiledAlias> channelAlias, @NonNull List<CompiledAlias> userAlias, final String expressionWithOptionalLabel) {
         if (channelAlias.isEmpty() && userAlias.isEmpty()) {
             return expressionWithOptionalLabel;
         }
         String expressionWithOptionalLabelsAndAppliedAliases = expressionWithOptionalLabel;
 
         //specific before general, because the user specific have the higher priority and by applying it stop the application of the general alias
-        for (Alias alias : userAlias) {
+        for (CompiledAlias alias : userAlias) {
             expressionWithOptionalLabelsAndAppliedAliases = applyAliasIfMatch(alias, expressionWithOptionalLabelsAndAppliedAliases, "userChannel");
         }
 
-        for (Alias alias : channelAlias) {
+        for (CompiledAlias alias : channelAlias) {
             expressionWithOptionalLabelsAndAppliedAliases = applyAliasIfMatch(alias, expressionWithOptionalLabelsAndAppliedAliases, "channel");
         }
 
         return expressionWithOptionalLabelsAndAppliedAliases;
     }
 
-    private static String applyAliasIfMatch(Alias alias, String input, String scope) {
+    private static String applyAliasIfMatch(CompiledAlias compiledAlias, String input, String scope) {
+        final Alias alias = compiledAlias.alias();
         switch (alias.getType()) {
             case Regex -> {
-                Pattern pattern;
-                try {
-                    pattern = Pattern.compile(alias.getName());
-                } catch (PatternSyntaxException e) {
-                    log.info("invalid regex:{}", alias.getName(), e);
+                if (compiledAlias.pattern() == null) {
+                    //invalid regex
                     return input;
                 }
-                Matcher matcher = pattern.matcher(input);
+                Matcher matcher = compiledAlias.pattern().matcher(input);
 
                 if (matcher.find()) {
                     BotMetrics.incrementAliasUseMetricCounter(scope, Alias.Type.Regex, alias.toString());
@@ -95,14 +157,31 @@ public class AliasHelper {
     }
 
     public static String getAndApplyAliaseToExpression(long channelId, Long userId, PersistenceManager persistenceManager, final String expressionWithOptionalLabel) {
-        final List<Alias> channelAlias = getChannelAlias(channelId, persistenceManager);
-        final List<Alias> userChannelAlias;
+        final List<CompiledAlias> channelAlias = getCompiledChannelAlias(channelId, persistenceManager);
+        final List<CompiledAlias> userChannelAlias;
         if (userId == null) {
             userChannelAlias = List.of();
         } else {
             //todo combine request with getChannelAlias to a single db request
-            userChannelAlias = getUserChannelAlias(channelId, userId, persistenceManager);
+            userChannelAlias = getCompiledUserChannelAlias(channelId, userId, persistenceManager);
+        }
+        return applyCompiledAliaseToExpression(channelAlias, userChannelAlias, expressionWithOptionalLabel);
+    }
+
+    /**
+     * @param pattern the compiled regex of the alias name, null if the alias is not a regex or the regex is invalid
+     */
+    private record CompiledAlias(@NonNull Alias alias, Pattern pattern) {
+        static CompiledAlias of(@NonNull Alias alias) {
+            if (alias.getType() != Alias.Type.Regex) {
+                return new CompiledAlias(alias, null);
+            }
+            try {
+                return new CompiledAlias(alias, Pattern.compile(alias.getName()));
+            } catch (PatternSyntaxException e) {
+                log.info("invalid regex:{}", alias.getName(), e);
+                return new CompiledAlias(alias, null);
+            }
         }
-        return applyAliaseToExpression(channelAlias, userChannelAlias, expressionWithOptionalLabel);
     }
 }
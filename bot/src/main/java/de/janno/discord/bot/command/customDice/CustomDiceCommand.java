@@ -9,6 +9,7 @@ import de.janno.discord.bot.command.*;
 import de.janno.discord.bot.command.channelConfig.AliasHelper;
 import de.janno.discord.bot.dice.CachingDiceEvaluator;
 import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.DiceStatistics;
 import de.janno.discord.bot.dice.image.DiceImageStyle;
 import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import de.janno.discord.bot.persistance.Mapper;
@@ -50,7 +51,7 @@ public class CustomDiceCommand extends AbstractCommand<CustomDiceConfig, StateDa
 
     public static CustomDiceConfig deserializeConfig(@NonNull MessageConfigDTO messageConfigDTO) {
         Preconditions.checkArgument(CONFIG_TYPE_ID.equals(messageConfigDTO.getConfigClassId()), "Unknown configClassId: %s", messageConfigDTO.getConfigClassId());
-        return Mapper.deserializeObject(messageConfigDTO.getConfig(), CustomDiceConfig.class);
+        return RollConfigCache.getOrDeserialize(messageConfigDTO, CustomDiceConfig.class);
     }
 
     @Override
@@ -152,12 +153,27 @@ public class CustomDiceCommand extends AbstractCommand<CustomDiceConfig, StateDa
     }
 
     @Override
-    protected @NonNull Optional<RollAnswer> getAnswer(CustomDiceConfig config, State<StateData> state, long channelId, long userId) {
-        Optional<ButtonIdLabelAndDiceExpression> selectedButton = Optional.ofNullable(state).map(State::getButtonValue)
+    protected @NonNull Optional<DiceStatistics> getDiceStatistics() {
+        return Optional.of(diceEvaluatorAdapter.getDiceStatistics());
+    }
+
+    @Override
+    protected @NonNull Optional<String> getStatsExpression(CustomDiceConfig config, State<StateData> state, long channelId, long userId) {
+        return getSelectedButton(config, state)
+                .map(selectedButton -> AliasHelper.getAndApplyAliaseToExpression(channelId, userId, persistenceManager, selectedButton.getDiceExpression()));
+    }
+
+    private Optional<ButtonIdLabelAndDiceExpression> getSelectedButton(CustomDiceConfig config, State<StateData> state) {
+        return Optional.ofNullable(state).map(State::getButtonValue)
                 .flatMap(bv -> config.getButtonIdLabelAndDiceExpressions().stream()
                         .filter(bld -> bld.getButtonId().equals(bv))
                         .findFirst()
                 );
+    }
+
+    @Override
+    protected @NonNull Optional<RollAnswer> getAnswer(CustomDiceConfig config, State<StateData> state, long channelId, long userId) {
+        Optional<ButtonIdLabelAndDiceExpression> selectedButton = getSelectedButton(config, state);
         if (selectedButton.isEmpty()) {
             return Optional.empty();
         }
@@ -12,6 +12,7 @@ import de.janno.discord.bot.command.*;
 import de.janno.discord.bot.command.channelConfig.AliasHelper;
 import de.janno.discord.bot.dice.CachingDiceEvaluator;
 import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.DiceStatistics;
 import de.janno.discord.bot.dice.image.DiceImageStyle;
 import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import de.janno.discord.bot.persistance.Mapper;
@@ -322,7 +323,7 @@ public class CustomParameterCommand extends AbstractCommand<CustomParameterConfi
 
     public static CustomParameterConfig deserializeConfig(MessageConfigDTO messageConfigDTO) {
         Preconditions.checkArgument(CONFIG_TYPE_ID.equals(messageConfigDTO.getConfigClassId()), "Unknown configClassId: %s", messageConfigDTO.getConfigClassId());
-        return Mapper.deserializeObject(messageConfigDTO.getConfig(), CustomParameterConfig.class);
+        return RollConfigCache.getOrDeserialize(messageConfigDTO, CustomParameterConfig.class);
     }
 
     static String removeSuffixLabelFromExpression(@NonNull String expression, String label) {
@@ -406,13 +407,29 @@ public class CustomParameterCommand extends AbstractCommand<CustomParameterConfi
         );
     }
 
+    @Override
+    protected @NonNull Optional<DiceStatistics> getDiceStatistics() {
+        return Optional.of(diceEvaluatorAdapter.getDiceStatistics());
+    }
+
+    @Override
+    protected @NonNull Optional<String> getStatsExpression(CustomParameterConfig config, State<CustomParameterStateData> state, long channelId, long userId) {
+        if (hasMissingParameter(state)) {
+            return Optional.empty();
+        }
+        return Optional.of(getExpressionWithoutSuffixLabelAndAlias(config, state, getLabel(config, state), channelId, userId));
+    }
+
+    private String getExpressionWithoutSuffixLabelAndAlias(CustomParameterConfig config, State<CustomParameterStateData> state, String label, long channelId, long userId) {
+        final String expressionWithoutSuffixLabel = removeSuffixLabelFromExpression(getFilledExpression(config, state), label);
+        return AliasHelper.getAndApplyAliaseToExpression(channelId, userId, persistenceManager, expressionWithoutSuffixLabel);
+    }
+
     @Override
     protected @NonNull Optional<RollAnswer> getAnswer(CustomParameterConfig config, State<CustomParameterStateData> state, long channelId, long userId) {
         if (!hasMissingParameter(state)) {
-            final String expression = getFilledExpression(config, state);
             final String label = getLabel(config, state);
-            final String expressionWithoutSuffixLabel = removeSuffixLabelFromExpression(expression, label);
-            final String expressionWithoutSuffixLabelAndAlias = AliasHelper.getAndApplyAliaseToExpression(channelId, userId, persistenceManager, expressionWithoutSuffixLabel);
+            final String expressionWithoutSuffixLabelAndAlias = getExpressionWithoutSuffixLabelAndAlias(config, state, label, channelId, userId);
             return Optional.of(diceEvaluatorAdapter.answerRollWithGivenLabel(expressionWithoutSuffixLabelAndAlias,
                     label,
                     false,
@@ -509,12 +526,10 @@ public class CustomParameterCommand extends AbstractCommand<CustomParameterConfi
     @Override
     protected void updateCurrentMessageStateData(UUID configUUID, Long guildId, long channelId, long messageId, @NonNull CustomParameterConfig config, @NonNull State<CustomParameterStateData> state) {
         if (!hasMissingParameter(state)) {
-            persistenceManager.deleteStateForMessage(channelId, messageId);
             //message data so we knew the button message exists
-            persistenceManager.saveMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), Mapper.NO_PERSISTED_STATE, null));
+            persistenceManager.upsertMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), Mapper.NO_PERSISTED_STATE, null));
         } else if (state.getData() != null) {
-            persistenceManager.deleteStateForMessage(channelId, messageId);
-            persistenceManager.saveMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
+            persistenceManager.upsertMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
         }
     }
 
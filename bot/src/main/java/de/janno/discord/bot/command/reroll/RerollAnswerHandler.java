@@ -149,7 +149,7 @@ public class RerollAnswerHandler extends ComponentCommandImpl<RerollAnswerConfig
         } else {
             loadedStateData = null;
         }
-        final RerollAnswerConfig loadedConfig = Mapper.deserializeObject(messageConfigDTO.getConfig(), RerollAnswerConfig.class);
+        final RerollAnswerConfig loadedConfig = RollConfigCache.getOrDeserialize(messageConfigDTO, RerollAnswerConfig.class);
         if (!loadedConfig.getOwner().equals(invokingUserName)) {
             //unmodified state if the user is not the owner, we need to change the buttonValue or else it will trigger actions
             return new ConfigAndState<>(messageConfigDTO.getConfigUUID(), loadedConfig, new State<>(WRONG_USER_ID, Optional.ofNullable(loadedStateData)
@@ -204,8 +204,7 @@ public class RerollAnswerHandler extends ComponentCommandImpl<RerollAnswerConfig
                     .subscribeOn(Schedulers.boundedElastic())
                     .subscribe();
         } else if (state.getData() != null) {
-            persistenceManager.deleteStateForMessage(channelId, messageId);
-            persistenceManager.saveMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
+            persistenceManager.upsertMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
         }
     }
 
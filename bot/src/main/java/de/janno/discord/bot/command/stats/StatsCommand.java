@@ -0,0 +1,177 @@
+package de.janno.discord.bot.command.stats;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import de.janno.discord.bot.BotMetrics;
+import de.janno.discord.bot.I18n;
+import de.janno.discord.bot.dice.CachingDiceEvaluator;
+import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.DiceStatistics;
+import de.janno.discord.bot.dice.RollBudgetExceededException;
+import de.janno.discord.bot.dice.image.HistogramImageCreator;
+import de.janno.discord.connector.api.SlashCommand;
+import de.janno.discord.connector.api.SlashEventAdaptor;
+import de.janno.discord.connector.api.message.EmbedOrMessageDefinition;
+import de.janno.discord.connector.api.slash.CommandDefinition;
+import de.janno.discord.connector.api.slash.CommandDefinitionOption;
+import de.janno.discord.connector.api.slash.CommandIntegrationType;
+import de.janno.discord.connector.api.slash.CommandInteractionOption;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Shows the probability distribution of an expression, estimated by simulated rolls.
+ */
+@Slf4j
+public class StatsCommand implements SlashCommand {
+
+    private static final String COMMAND_ID = "stats";
+    private static final String EXPRESSION_OPTION = "expression";
+    private static final String HELP = "help";
+    private final DiceEvaluatorAdapter diceEvaluatorAdapter;
+    private final DiceStatistics diceStatistics;
+    private static final HistogramImageCreator HISTOGRAM_IMAGE_CREATOR = new HistogramImageCreator();
+
+    public StatsCommand(CachingDiceEvaluator cachingDiceEvaluator) {
+        this.diceEvaluatorAdapter = new DiceEvaluatorAdapter(cachingDiceEvaluator);
+        this.diceStatistics = cachingDiceEvaluator.getDiceStatistics();
+    }
+
+    @VisibleForTesting
+    static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    @Override
+    public @NonNull String getCommandId() {
+        return COMMAND_ID;
+    }
+
+    @Override
+    public @NonNull CommandDefinition getCommandDefinition() {
+        return CommandDefinition.builder()
+                .name(getCommandId())
+                .nameLocales(I18n.allNoneEnglishMessagesNames("stats.name"))
+                .description(I18n.getMessage("stats.description", Locale.ENGLISH))
+                .descriptionLocales(I18n.allNoneEnglishMessagesDescriptions("stats.description"))
+                .integrationTypes(CommandIntegrationType.ALL)
+                .option(CommandDefinitionOption.builder()
+                        .name(EXPRESSION_OPTION)
+                        .nameLocales(I18n.allNoneEnglishMessagesNames("stats.expression.name"))
+                        .description(I18n.getMessage("stats.expression.description", Locale.ENGLISH))
+                        .descriptionLocales(I18n.allNoneEnglishMessagesDescriptions("stats.expression.description"))
+                        .required(true)
+                        .type(CommandDefinitionOption.Type.STRING)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public @NonNull Mono<Void> handleSlashCommandEvent(@NonNull SlashEventAdaptor event, @NonNull Supplier<UUID> uuidSupplier, @NonNull Locale userLocale) {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        Optional<String> checkPermissions = event.checkPermissions(userLocale);
+        if (checkPermissions.isPresent()) {
+            return event.reply(checkPermissions.get(), false);
+        }
+
+        Optional<String> expressionOptional = event.getOption(EXPRESSION_OPTION).map(CommandInteractionOption::getStringValue);
+        if (expressionOptional.isEmpty()) {
+            log.error("Unknown command: {} from {}", event.getOptions(), event.getRequester().toLogString());
+            return event.reply("There was an error, try again", true);
+        }
+        if (expressionOptional.get().equals(HELP)) {
+            BotMetrics.incrementSlashHelpMetricCounter(getCommandId());
+            return event.replyWithEmbedOrMessageDefinition(getHelpMessage(userLocale), true);
+        }
+        final String expression = getSingleExpression(expressionOptional.get());
+        Optional<String> validationMessage = diceEvaluatorAdapter.validateDiceExpression(expression, "`/stats expression:help`", userLocale);
+        if (validationMessage.isPresent()) {
+            log.info("{} Validation message: {} for {}", event.getRequester().toLogString(),
+                    validationMessage.get().replace("\n", ""),
+                    expression.replace("\n", ""));
+            return event.reply(String.format("%s\n%s", event.getCommandString(), validationMessage.get()), true);
+        }
+        BotMetrics.incrementSlashStartMetricCounter(getCommandId());
+
+        return Mono.fromCallable(() -> diceStatistics.getStatistics(diceStatistics.getRollerOrError(expression)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(statistics -> {
+                    log.info("{}: {} of '{}' with {} rolls in {}ms",
+                            event.getRequester().toLogString(),
+                            getCommandId(),
+                            expression.replace("\n", " "),
+                            statistics.rolls(),
+                            stopwatch.elapsed(TimeUnit.MILLISECONDS));
+                    return event.replyWithEmbedOrMessageDefinition(createAnswer(expression, statistics, userLocale), false);
+                })
+                .onErrorResume(RollBudgetExceededException.class, e -> event.reply(DiceEvaluatorAdapter.getBudgetExceededMessage(e, userLocale), true));
+    }
+
+    /**
+     * The distribution of a batch roll is the distribution of the single expression
+     */
+    public static @NonNull String getSingleExpression(@NonNull String expression) {
+        return DiceEvaluatorAdapter.getBatchExpression(expression)
+                .map(DiceEvaluatorAdapter.BatchExpression::expression)
+                .orElse(expression);
+    }
+
+    public static @NonNull EmbedOrMessageDefinition createAnswer(@NonNull String expression, @NonNull DiceStatistics.Statistics statistics, @NonNull Locale userLocale) {
+        if (statistics.rolls() == 0) {
+            return EmbedOrMessageDefinition.builder()
+                    .shortedTitle(expression)
+                    .shortedDescription(I18n.getMessage("stats.reply.noNumericResult", userLocale))
+                    .type(EmbedOrMessageDefinition.Type.EMBED)
+                    .build();
+        }
+        String description = I18n.getMessage("stats.reply.summary", userLocale,
+                statistics.rolls(),
+                formatNumber(statistics.mean()),
+                formatNumber(statistics.standardDeviation()),
+                formatNumber(statistics.min()),
+                formatNumber(statistics.max()));
+        if (statistics.nonNumeric() > 0) {
+            description += "\n" + I18n.getMessage("stats.reply.nonNumeric", userLocale, statistics.nonNumeric());
+        }
+        if (statistics.stoppedByTime()) {
+            description += "\n" + I18n.getMessage("stats.reply.stoppedByTime", userLocale);
+        }
+        final String percentiles = "5%%: %s, 25%%: %s, 50%%: %s, 75%%: %s, 95%%: %s".formatted(
+                formatNumber(statistics.percentile(0.05)),
+                formatNumber(statistics.percentile(0.25)),
+                formatNumber(statistics.percentile(0.5)),
+                formatNumber(statistics.percentile(0.75)),
+                formatNumber(statistics.percentile(0.95)));
+        return EmbedOrMessageDefinition.builder()
+                .shortedTitle(expression)
+                .shortedDescription(description)
+                .field(new EmbedOrMessageDefinition.Field(I18n.getMessage("stats.reply.percentiles", userLocale), percentiles, false))
+                .image(HISTOGRAM_IMAGE_CREATOR.createHistogramImage(statistics.histogram()))
+                .fileAltText(I18n.getMessage("stats.reply.histogram", userLocale))
+                .type(EmbedOrMessageDefinition.Type.EMBED)
+                .build();
+    }
+
+    @VisibleForTesting
+    EmbedOrMessageDefinition getHelpMessage(Locale userLocale) {
+        return EmbedOrMessageDefinition.builder()
+                .descriptionOrContent(I18n.getMessage("stats.help.message", userLocale) + "\n" + DiceEvaluatorAdapter.getHelp())
+                .field(new EmbedOrMessageDefinition.Field(I18n.getMessage("help.example.field.name", userLocale), I18n.getMessage("stats.help.example.value", userLocale), false))
+                .field(new EmbedOrMessageDefinition.Field(I18n.getMessage("help.documentation.field.name", userLocale), I18n.getMessage("help.documentation.field.value", userLocale), false))
+                .field(new EmbedOrMessageDefinition.Field(I18n.getMessage("help.discord.server.field.name", userLocale), I18n.getMessage("help.discord.server.field.value", userLocale), false))
+                .field(new EmbedOrMessageDefinition.Field(I18n.getMessage("help.discord.support.field.name", userLocale), I18n.getMessage("help.discord.support.field.value", userLocale), false))
+                .build();
+    }
+}
@@ -9,6 +9,7 @@ import de.janno.discord.bot.command.*;
 import de.janno.discord.bot.command.channelConfig.AliasHelper;
 import de.janno.discord.bot.dice.CachingDiceEvaluator;
 import de.janno.discord.bot.dice.DiceEvaluatorAdapter;
+import de.janno.discord.bot.dice.DiceStatistics;
 import de.janno.discord.bot.dice.image.DiceImageStyle;
 import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import de.janno.discord.bot.persistance.Mapper;
@@ -60,7 +61,7 @@ public class SumCustomSetCommand extends AbstractCommand<SumCustomSetConfig, Sum
 
     public static SumCustomSetConfig deserializeConfig(MessageConfigDTO messageConfigDTO) {
         Preconditions.checkArgument(CONFIG_TYPE_ID.equals(messageConfigDTO.getConfigClassId()), "Unknown configClassId: %s", messageConfigDTO.getConfigClassId());
-        return Mapper.deserializeObject(messageConfigDTO.getConfig(), SumCustomSetConfig.class);
+        return RollConfigCache.getOrDeserialize(messageConfigDTO, SumCustomSetConfig.class);
     }
 
     @Override
@@ -74,12 +75,10 @@ public class SumCustomSetCommand extends AbstractCommand<SumCustomSetConfig, Sum
     @Override
     protected void updateCurrentMessageStateData(UUID configUUID, Long guildId, long channelId, long messageId, @NonNull SumCustomSetConfig config, @NonNull State<SumCustomSetStateDataV2> state) {
         if (ROLL_BUTTON_ID.equals(state.getButtonValue())) {
-            persistenceManager.deleteStateForMessage(channelId, messageId);
             //message data so we knew the button message exists
-            persistenceManager.saveMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), Mapper.NO_PERSISTED_STATE, null));
+            persistenceManager.upsertMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), Mapper.NO_PERSISTED_STATE, null));
         } else if (state.getData() != null) {
-            persistenceManager.deleteStateForMessage(channelId, messageId);
-            persistenceManager.saveMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
+            persistenceManager.upsertMessageData(new MessageDataDTO(configUUID, guildId, channelId, messageId, getCommandId(), STATE_DATA_TYPE_ID, Mapper.serializedObject(state.getData())));
         }
     }
 
@@ -192,16 +191,37 @@ public class SumCustomSetCommand extends AbstractCommand<SumCustomSetConfig, Sum
     }
 
     @Override
-    protected @NonNull Optional<RollAnswer> getAnswer(SumCustomSetConfig config, State<SumCustomSetStateDataV2> state, long channelId, long userId) {
-        if (!(ROLL_BUTTON_ID.equals(state.getButtonValue()) &&
+    protected @NonNull Optional<DiceStatistics> getDiceStatistics() {
+        return Optional.of(diceEvaluatorAdapter.getDiceStatistics());
+    }
+
+    @Override
+    protected @NonNull Optional<String> getStatsExpression(SumCustomSetConfig config, State<SumCustomSetStateDataV2> state, long channelId, long userId) {
+        if (!isRoll(state)) {
+            return Optional.empty();
+        }
+        return Optional.of(getExpressionWithAlias(config, state, channelId, userId));
+    }
+
+    private static boolean isRoll(State<SumCustomSetStateDataV2> state) {
+        return ROLL_BUTTON_ID.equals(state.getButtonValue()) &&
                 !Optional.ofNullable(state.getData())
                         .map(SumCustomSetStateDataV2::getDiceExpressions)
                         .map(List::isEmpty)
-                        .orElse(true))) {
+                        .orElse(true);
+    }
+
+    private String getExpressionWithAlias(SumCustomSetConfig config, State<SumCustomSetStateDataV2> state, long channelId, long userId) {
+        return AliasHelper.getAndApplyAliaseToExpression(channelId, userId, persistenceManager, combineExpressions(state.getData().getDiceExpressions(), config.getPrefix(), config.getPostfix()));
+    }
+
+    @Override
+    protected @NonNull Optional<RollAnswer> getAnswer(SumCustomSetConfig config, State<SumCustomSetStateDataV2> state, long channelId, long userId) {
+        if (!isRoll(state)) {
             return Optional.empty();
         }
         String label = combineLabel(state.getData().getDiceExpressions(), config);
-        String newExpression = AliasHelper.getAndApplyAliaseToExpression(channelId, userId, persistenceManager, combineExpressions(state.getData().getDiceExpressions(), config.getPrefix(), config.getPostfix()));
+        String newExpression = getExpressionWithAlias(config, state, channelId, userId);
 
         return Optional.of(diceEvaluatorAdapter.answerRollWithGivenLabel(newExpression,
                 label,
@@ -1,12 +1,19 @@
 package de.janno.discord.bot.dice;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import de.janno.discord.bot.BotMetrics;
 import de.janno.evaluator.dice.DiceEvaluator;
 import de.janno.evaluator.dice.DieIdAndValue;
 import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.RollResult;
 import de.janno.evaluator.dice.Roller;
 import de.janno.evaluator.dice.random.GivenDiceNumberSupplier;
 import de.janno.evaluator.dice.random.NumberSupplier;
@@ -16,17 +23,56 @@ import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static io.micrometer.core.instrument.Metrics.globalRegistry;
 
 @Slf4j
 public class CachingDiceEvaluator {
 
+    /**
+     * Sum of dice and numbers like 2d6+1d8-2 or 4d6k3, which can only fail in the parser or by too many dice. Dice
+     * without count, with zero dice or zero kept dice are left to the trial roll.
+     */
+    private static final Pattern SIMPLE_SUM = Pattern.compile("\\s*([1-9]\\d{0,8}d[1-9]\\d{0,8}([kl][1-9]\\d{0,8})?|\\d{1,9})(\\s*[+-]\\s*([1-9]\\d{0,8}d[1-9]\\d{0,8}([kl][1-9]\\d{0,8})?|\\d{1,9}))*\\s*");
+    private static final Pattern DICE_COUNT = Pattern.compile("(\\d{1,9})d");
+    /**
+     * Sums of dice and numbers in any case and with whitespace around the operators, like 1D20 + 3
+     */
+    private static final Pattern NORMALIZABLE_SUM = Pattern.compile("(?i)\\s*(\\d{1,9}d\\d{1,9}([kl]\\d{1,9})?|\\d{1,9})(\\s*[+-]\\s*(\\d{1,9}d\\d{1,9}([kl]\\d{1,9})?|\\d{1,9}))*\\s*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
     private final NumberSupplier numberSupplier;
-    private LoadingCache<String, RollerOrError> diceRollerCache;
+    private final RollExecutor rollExecutor = new RollExecutor();
+    /**
+     * Bounded by the estimated weight of the entries, with a frequency aware eviction so one-off expressions don't push
+     * out the often used rollers
+     */
+    private final LoadingCache<String, RollerOrError> diceRollerCache;
+    /**
+     * Results of the autocomplete validation without roller, so the partial expressions of each keystroke don't evict
+     * the rollers in the diceRollerCache
+     */
+    private final Cache<String, RollerOrError> validationCache;
+    /**
+     * Shared by the stats command and the stats answer of the buttons, created on the first use
+     */
+    private final Supplier<DiceStatistics> diceStatistics = Suppliers.memoize(() -> new DiceStatistics(this));
     private DiceEvaluator diceEvaluator;
+    /**
+     * Hit rate at the end of the window after the start, NaN until the window is over
+     */
+    private volatile double startupHitRate = Double.NaN;
 
     @VisibleForTesting
     public CachingDiceEvaluator(BiFunction<Integer, Integer, Integer> numberSupplier) {
@@ -34,7 +80,11 @@ public class CachingDiceEvaluator {
     }
 
     public CachingDiceEvaluator(NumberSupplier numberSupplier) {
-        this.numberSupplier = numberSupplier;
+        //the budget is checked for each random number, so a roll that exceeds its budget is cancelled
+        this.numberSupplier = (minExcl, maxIncl, dieId) -> {
+            RollExecutor.checkBudget();
+            return numberSupplier.get(minExcl, maxIncl, dieId);
+        };
 
         diceEvaluator = createDiceEvaluator();
         Config.onChange(e -> {
@@ -42,18 +92,116 @@ public class CachingDiceEvaluator {
             log.info("recreate dice evaluator");
         }, "diceEvaluator.maxNumberOfDice", "diceEvaluator.maxNumberOfElements", "diceEvaluator.keepChildrenRolls");
 
-        diceRollerCache = createCache();
+        diceRollerCache = Caffeine.newBuilder()
+                .maximumWeight(Config.getLong("diceEvaluator.cacheMaxWeight", 5_000_000))
+                .weigher(CachingDiceEvaluator::weight)
+                //eviction in the calling thread, so the cache size is directly updated
+                .executor(Runnable::run)
+                .removalListener((_, _, cause) -> globalRegistry.counter("diceEvaluator.cache.removal", Tags.of("cause", cause.name())).increment())
+                .recordStats()
+                .build(this::createRollerOrError);
         Config.onChange(e -> {
-            diceRollerCache = createCache();
-            log.info("recreate dice cache");
-        }, "diceEvaluator.cacheSize");
+            //resize and keep the most valuable entries
+            long maxWeight = Config.getLong("diceEvaluator.cacheMaxWeight", 5_000_000);
+            diceRollerCache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxWeight));
+            log.info("resize dice cache to {}", maxWeight);
+        }, "diceEvaluator.cacheMaxWeight");
 
-        Gauge.builder("diceEvaluator.cache", diceRollerCache::size).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.cache", diceRollerCache::estimatedSize).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L)).tags(Tags.of("stats", "weightedSize")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.policy().eviction().map(Policy.Eviction::getMaximum).orElse(0L)).tags(Tags.of("stats", "maxWeight")).register(globalRegistry);
         Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().requestCount()).tags(Tags.of("stats", "requests")).register(globalRegistry);
         Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
         Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().evictionCount()).tags(Tags.of("stats", "eviction")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().evictionWeight()).tags(Tags.of("stats", "evictionWeight")).register(globalRegistry);
         Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().totalLoadTime()).tags(Tags.of("stats", "totalLoadTime")).register(globalRegistry);
         Gauge.builder("diceEvaluator.cache", () -> diceRollerCache.stats().averageLoadPenalty()).tags(Tags.of("stats", "averageLoadTime")).register(globalRegistry);
+
+        validationCache = CacheBuilder.newBuilder()
+                .maximumSize(Config.getLong("diceEvaluator.validationCache.size", 10_000))
+                .expireAfterWrite(Config.getLong("diceEvaluator.validationCache.ttlMs", 300_000), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        Gauge.builder("diceEvaluator.validationCache", validationCache::size).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.validationCache", () -> validationCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.validationCache", () -> validationCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+
+        if (Config.getBool("diceEvaluator.snapshot.enabled", false)) {
+            startSnapshot(new DiceExpressionSnapshot(Path.of(Config.get("diceEvaluator.snapshot.file", "./persistence/diceExpressionSnapshot.bin"))));
+        }
+    }
+
+    /**
+     * Fills the cache in the background with the expressions of the last snapshot, while the bot is connecting, and
+     * writes periodically and on shutdown a new snapshot.
+     */
+    private void startSnapshot(@NonNull DiceExpressionSnapshot snapshot) {
+        final int topN = Config.getInt("diceEvaluator.snapshot.topN", 1000);
+        final long intervalMs = Config.getLong("diceEvaluator.snapshot.intervalMs", 1_800_000);
+        final long hitRateWindowMs = Config.getLong("diceEvaluator.snapshot.hitRateWindowMs", 600_000);
+        final int warmUpThreads = Config.getInt("diceEvaluator.snapshot.warmUpThreads", 4);
+
+        Thread.ofPlatform().name("diceCacheWarmUp").daemon().start(() -> warmUp(snapshot.read(), warmUpThreads));
+
+        Gauge.builder("diceEvaluator.warmStart", () -> Double.isNaN(startupHitRate) ? diceRollerCache.stats().hitRate() : startupHitRate)
+                .tags(Tags.of("stats", "startupHitRate")).register(globalRegistry);
+        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("diceCacheSnapshot").daemon().factory());
+        executorService.schedule(() -> {
+            startupHitRate = diceRollerCache.stats().hitRate();
+            log.info("dice cache hit rate after start: {}", startupHitRate);
+        }, hitRateWindowMs, TimeUnit.MILLISECONDS);
+        executorService.scheduleWithFixedDelay(() -> writeSnapshot(snapshot, topN), intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            executorService.shutdownNow();
+            writeSnapshot(snapshot, topN);
+        }));
+    }
+
+    private void writeSnapshot(@NonNull DiceExpressionSnapshot snapshot, int topN) {
+        try {
+            List<String> expressions = getHottestExpressions(topN);
+            snapshot.write(expressions);
+            log.info("saved dice expression snapshot with {} expressions", expressions.size());
+        } catch (IOException e) {
+            log.error("Could not write dice expression snapshot", e);
+        }
+    }
+
+    /**
+     * The valid expressions with the highest estimated usage frequency, starting with the most used one
+     */
+    @VisibleForTesting
+    List<String> getHottestExpressions(int limit) {
+        return diceRollerCache.policy().eviction()
+                .map(e -> e.hottest(limit))
+                .orElse(Map.of())
+                .entrySet().stream()
+                .filter(e -> e.getValue().isValid())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Creates the rollers for the expressions in parallel and waits until all are finished. The loading over the map
+     * view is not recorded in the cache stats, so the hit rate shows only the real requests.
+     */
+    @VisibleForTesting
+    void warmUp(@NonNull List<String> expressions, int threads) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        try (ExecutorService executorService = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("diceCacheWarmUp-", 0).daemon().factory())) {
+            for (String expression : expressions) {
+                executorService.execute(() -> {
+                    try {
+                        diceRollerCache.asMap().computeIfAbsent(expression, this::createRollerOrError);
+                    } catch (Exception e) {
+                        log.warn("Could not warm up dice expression: {}", expression.replace("\n", " "), e);
+                    }
+                });
+            }
+        }
+        BotMetrics.diceCacheWarmUpTimer(stopwatch.elapsed());
+        log.info("warmed up dice cache with {} expressions in {}ms", expressions.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
     }
 
     public GivenDiceNumberSupplier getGivenDiceNumberSuppler(List<DieIdAndValue> givenDiceNumberMap) {
@@ -66,32 +214,147 @@ public class CachingDiceEvaluator {
                 Config.getBool("diceEvaluator.keepChildrenRolls", false));
     }
 
-    private LoadingCache<String, RollerOrError> createCache() {
-        return CacheBuilder.newBuilder()
-                .maximumSize(Config.getInt("diceEvaluator.cacheSize", 10_000))
-                .recordStats()
-                .build(new CacheLoader<>() {
-                    @Override
-                    public @NonNull RollerOrError load(@NonNull String expression) {
-                        try {
-                            log.trace("create roller for: {}", expression.replace("\n", " "));
-                            Roller roller = diceEvaluator.buildRollSupplier(expression);
-                            roller.roll();
-                            return new RollerOrError(expression, roller, true, null, null);
-                        } catch (ExpressionException e) {
-                            String errorLocation = DiceEvaluatorAdapter.getErrorLocationString(expression, e.getExpressionPosition());
-                            return new RollerOrError(expression, null, false, e.getMessage(), errorLocation);
-                        }
-                    }
-                });
+    private @NonNull RollerOrError createRollerOrError(@NonNull String expression) {
+        try {
+            log.trace("create roller for: {}", expression.replace("\n", " "));
+            Roller roller = diceEvaluator.buildRollSupplier(expression);
+            if (!needsTrialRoll(expression, Config.getInt("diceEvaluator.maxNumberOfDice", 1000))) {
+                //fast path for the most used expressions: no trial roll and rolled in the calling thread
+                return new RollerOrError(expression, roller, true, null, null, RollCost.SIMPLE);
+            }
+            final RollCost estimatedCost = RollCost.estimate(expression);
+            final Stopwatch stopwatch = Stopwatch.createStarted();
+            rollExecutor.execute(estimatedCost, roller::roll);
+            final RollCost cost = estimatedCost.atLeast(RollCost.ofDuration(stopwatch.elapsed()));
+            return new RollerOrError(expression, roller, true, null, null, cost);
+        } catch (ExpressionException e) {
+            String errorLocation = DiceEvaluatorAdapter.getErrorLocationString(expression, e.getExpressionPosition());
+            return new RollerOrError(expression, null, false, e.getMessage(), errorLocation);
+        }
+    }
+
+    private @NonNull RollerOrError createValidationResult(@NonNull String expression) {
+        try {
+            Roller roller = diceEvaluator.buildRollSupplier(expression);
+            if (needsTrialRoll(expression, Config.getInt("diceEvaluator.maxNumberOfDice", 1000))) {
+                rollExecutor.execute(RollCost.estimate(expression), roller::roll);
+            }
+            return new RollerOrError(expression, null, true, null, null);
+        } catch (ExpressionException e) {
+            String errorLocation = DiceEvaluatorAdapter.getErrorLocationString(expression, e.getExpressionPosition());
+            return new RollerOrError(expression, null, false, e.getMessage(), errorLocation);
+        }
+    }
+
+    /**
+     * A simple sum of dice and numbers has no error that is only found by rolling, if the number of dice is in the limit
+     */
+    @VisibleForTesting
+    static boolean needsTrialRoll(@NonNull String expression, int maxNumberOfDice) {
+        if (!SIMPLE_SUM.matcher(expression).matches()) {
+            return true;
+        }
+        long numberOfDice = 0;
+        Matcher matcher = DICE_COUNT.matcher(expression);
+        while (matcher.find()) {
+            numberOfDice += Long.parseLong(matcher.group(1));
+        }
+        return numberOfDice > maxNumberOfDice;
+    }
+
+    /**
+     * Estimation of the memory of an entry. The roller tree grows with the length of the expression and each entry has a
+     * fixed overhead.
+     */
+    @VisibleForTesting
+    static int weight(@NonNull String expression, @NonNull RollerOrError rollerOrError) {
+        final int errorLength = rollerOrError.getErrorMessage() == null ? 0 : rollerOrError.getErrorMessage().length();
+        return 64 + expression.length() * 2 + errorLength;
+    }
+
+    public @NonNull DiceStatistics getDiceStatistics() {
+        return diceStatistics.get();
     }
 
     public @NonNull RollerOrError get(@NonNull String expression) {
-        return diceRollerCache.getUnchecked(expression);
+        return diceRollerCache.get(getCacheKey(expression));
+    }
+
+    /**
+     * The canonical expression, counts the expressions that were collapsed into the key of an equivalent spelling
+     */
+    private static String getCacheKey(String expression) {
+        final String canonicalExpression = canonicalize(expression);
+        if (!canonicalExpression.equals(expression)) {
+            globalRegistry.counter("diceEvaluator.canonical.collapsed").increment();
+        }
+        return canonicalExpression;
+    }
+
+    /**
+     * Validation for the autocomplete. The result contains no roller, an existing roller is used without changing its
+     * usage statistic and new results are only cached in the short living validation cache.
+     */
+    public @NonNull RollerOrError validate(@NonNull String expression) {
+        final String canonicalExpression = getCacheKey(expression);
+        RollerOrError existing = diceRollerCache.policy().getIfPresentQuietly(canonicalExpression);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            return validationCache.get(canonicalExpression, () -> createValidationResult(canonicalExpression));
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RollBudgetExceededException budgetExceededException) {
+                throw budgetExceededException;
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Rolls the roller count times in one execution, the budget is for all rolls together
+     */
+    public @NonNull List<RollResult> rollBatch(@NonNull RollerOrError rollerOrError, int count) throws ExpressionException {
+        final Roller roller = Objects.requireNonNull(rollerOrError.getRoller(), "roll of invalid expression");
+        return rollExecutor.execute(rollerOrError.getCost(), () -> {
+            final List<RollResult> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(roller.roll());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Rolls in the pool of the cost of the roller and cancels the roll if it exceeds the time budget
+     */
+    public @NonNull RollResult roll(@NonNull RollerOrError rollerOrError, @NonNull List<DieIdAndValue> givenDiceNumbers) throws ExpressionException {
+        final Roller roller = Objects.requireNonNull(rollerOrError.getRoller(), "roll of invalid expression");
+        if (givenDiceNumbers.isEmpty()) {
+            return rollExecutor.execute(rollerOrError.getCost(), roller::roll);
+        }
+        final GivenDiceNumberSupplier givenDiceNumberSupplier = getGivenDiceNumberSuppler(givenDiceNumbers);
+        return rollExecutor.execute(rollerOrError.getCost(), () -> roller.roll(givenDiceNumberSupplier));
+    }
+
+    /**
+     * Maps equivalent expressions to the same roller cache key. The surrounding whitespace is removed, which is for
+     * example left over by removing the label. Sums of dice and numbers are also lowercased and without whitespace, so
+     * 1D20 + 3 and 1d20+3 use the same roller. Other expressions keep their case and inner whitespace, because they can
+     * contain texts like the sides of custom dice, which are shown in the answer.
+     */
+    static String canonicalize(@NonNull String expression) {
+        if (NORMALIZABLE_SUM.matcher(expression).matches()) {
+            return WHITESPACE.matcher(expression).replaceAll("").toLowerCase(Locale.ROOT);
+        }
+        return expression.strip();
     }
 
     @VisibleForTesting
     public long getCacheSize() {
-        return diceRollerCache.size();
+        diceRollerCache.cleanUp();
+        return diceRollerCache.estimatedSize();
     }
 }
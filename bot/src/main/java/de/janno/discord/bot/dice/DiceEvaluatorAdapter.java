@@ -12,7 +12,6 @@ import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import de.janno.discord.bot.dice.image.ImageResultCreator;
 import de.janno.discord.connector.api.BottomCustomIdUtils;
 import de.janno.evaluator.dice.*;
-import de.janno.evaluator.dice.random.GivenDiceNumberSupplier;
 import io.avaje.config.Config;
 import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
@@ -24,11 +23,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class DiceEvaluatorAdapter {
 
     public final static String LABEL_DELIMITER = "@";
+    /**
+     * Prefix to roll an expression multiple times, like 6#1d20+5
+     */
+    private final static Pattern BATCH_PREFIX = Pattern.compile("^\\s*(\\d{1,4})#(.+)$", Pattern.DOTALL);
     private final static ImageResultCreator IMAGE_RESULT_CREATOR = new ImageResultCreator();
     private final CachingDiceEvaluator diceEvaluator;
 
@@ -98,6 +104,30 @@ public class DiceEvaluatorAdapter {
         return roll.getElements().stream().allMatch(r -> RollElement.NO_TAG.equals(r.getTag()));
     }
 
+    public @NonNull DiceStatistics getDiceStatistics() {
+        return diceEvaluator.getDiceStatistics();
+    }
+
+    /**
+     * Splits a batch expression like 6#1d20 in the number of rolls and the expression, empty if the expression has no
+     * batch prefix
+     */
+    public static Optional<BatchExpression> getBatchExpression(@NonNull String expression) {
+        Matcher matcher = BATCH_PREFIX.matcher(expression);
+        if (matcher.matches()) {
+            return Optional.of(new BatchExpression(Integer.parseInt(matcher.group(1)), matcher.group(2)));
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> validateBatchCount(int count, @NonNull Locale userLocale) {
+        final int maxCount = Config.getInt("diceEvaluator.batch.maxCount", 25);
+        if (count < 1 || count > maxCount) {
+            return Optional.of(I18n.getMessage("diceEvaluator.reply.validation.batchCount", userLocale, maxCount));
+        }
+        return Optional.empty();
+    }
+
     public static String getHelp() {
         return "```\n" + DiceEvaluator.getHelpText() + "\n```";
     }
@@ -159,7 +189,20 @@ public class DiceEvaluatorAdapter {
     }
 
     public Optional<String> validateDiceExpression(String expression, String helpCommand, @NonNull Locale userLocale) {
-        RollerOrError rollerOrError = diceEvaluator.get(expression);
+        Optional<BatchExpression> batchExpression = getBatchExpression(expression);
+        if (batchExpression.isPresent()) {
+            Optional<String> batchCountValidation = validateBatchCount(batchExpression.get().count(), userLocale);
+            if (batchCountValidation.isPresent()) {
+                return batchCountValidation;
+            }
+            expression = batchExpression.get().expression();
+        }
+        final RollerOrError rollerOrError;
+        try {
+            rollerOrError = diceEvaluator.get(expression);
+        } catch (RollBudgetExceededException e) {
+            return Optional.of(getBudgetExceededMessage(e, userLocale));
+        }
         if (rollerOrError.isValid()) {
             return Optional.empty();
         } else {
@@ -191,7 +234,20 @@ public class DiceEvaluatorAdapter {
         if (diceExpression.isBlank()) {
             return Optional.of(I18n.getMessage("diceEvaluator.reply.validation.blankExpression", userLocale, expressionWithOptionalLabel));
         }
-        RollerOrError rollerOrError = diceEvaluator.get(diceExpression);
+        Optional<BatchExpression> batchExpression = getBatchExpression(diceExpression);
+        if (batchExpression.isPresent()) {
+            Optional<String> batchCountValidation = validateBatchCount(batchExpression.get().count(), userLocale);
+            if (batchCountValidation.isPresent()) {
+                return batchCountValidation;
+            }
+            diceExpression = batchExpression.get().expression();
+        }
+        final RollerOrError rollerOrError;
+        try {
+            rollerOrError = diceEvaluator.validate(diceExpression);
+        } catch (RollBudgetExceededException e) {
+            return Optional.of(getBudgetExceededMessage(e, userLocale));
+        }
         if (rollerOrError.isValid()) {
             return Optional.empty();
         } else {
@@ -224,17 +280,16 @@ public class DiceEvaluatorAdapter {
                                                DiceStyleAndColor styleAndColor,
                                                @NonNull Locale userLocale,
                                                List<DieIdAndValue> dieAndValues) {
+        Optional<BatchExpression> batchExpression = getBatchExpression(expression);
+        if (batchExpression.isPresent()) {
+            return answerBatchRoll(batchExpression.get().expression(), batchExpression.get().count(), label, sumUp, answerFormatType, userLocale);
+        }
         try {
             final RollerOrError rollerOrError = diceEvaluator.get(expression);
 
             final RollResult rollResult;
             if (rollerOrError.getRoller() != null) {
-                if (dieAndValues.isEmpty()) {
-                    rollResult = rollerOrError.getRoller().roll();
-                } else {
-                    GivenDiceNumberSupplier givenDiceNumberSupplier = diceEvaluator.getGivenDiceNumberSuppler(dieAndValues);
-                    rollResult = rollerOrError.getRoller().roll(givenDiceNumberSupplier);
-                }
+                rollResult = diceEvaluator.roll(rollerOrError, dieAndValues);
             } else {
                 return RollAnswer.builder()
                         .answerFormatType(answerFormatType)
@@ -278,11 +333,93 @@ public class DiceEvaluatorAdapter {
                     .errorMessage(e.getMessage())
                     .errorLocation(getErrorLocationString(expression, e.getExpressionPosition()))
                     .build();
+        } catch (RollBudgetExceededException e) {
+            return RollAnswer.builder()
+                    .answerFormatType(answerFormatType)
+                    .expression(expression)
+                    .errorMessage(getBudgetExceededMessage(e, userLocale))
+                    .build();
         }
     }
 
+    /**
+     * Rolls the expression count times with the cached roller and creates one answer with a row for each roll, an
+     * expression with multiple results has them in one row. There is no result image, because the image shows the dice
+     * of a single roll. The count is validated here for all answers of batch expressions.
+     */
+    private RollAnswer answerBatchRoll(@NonNull String expression,
+                                      int count,
+                                      String label,
+                                      boolean sumUp,
+                                      @NonNull AnswerFormatType answerFormatType,
+                                      @NonNull Locale userLocale) {
+        final String batchExpression = "%d#%s".formatted(count, expression);
+        Optional<String> batchCountValidation = validateBatchCount(count, userLocale);
+        if (batchCountValidation.isPresent()) {
+            return RollAnswer.builder()
+                    .answerFormatType(answerFormatType)
+                    .expression(batchExpression)
+                    .errorMessage(batchCountValidation.get())
+                    .build();
+        }
+        try {
+            final RollerOrError rollerOrError = diceEvaluator.get(expression);
+            if (rollerOrError.getRoller() == null) {
+                return RollAnswer.builder()
+                        .answerFormatType(answerFormatType)
+                        .expression(rollerOrError.getExpression())
+                        .errorMessage(rollerOrError.getErrorMessage())
+                        .errorLocation(rollerOrError.getErrorExpressionContext())
+                        .build();
+            }
+            final List<RollResult> rollResults = diceEvaluator.rollBatch(rollerOrError, count);
+            BotMetrics.incrementBatchRollCounter(count);
+            //one row per roll of the batch, so the count limit is the limit of the rows
+            final List<RollAnswer.RollResults> rows = IntStream.range(0, rollResults.size())
+                    .mapToObj(i -> new RollAnswer.RollResults("%d: %s".formatted(i + 1, expression),
+                            rollResults.get(i).getRolls().stream().map(r -> getResult(r, sumUp)).collect(Collectors.joining(", ")),
+                            rollResults.get(i).getRolls().stream().map(r -> getRandomElementsString(r.getGroupedRandomElements())).collect(Collectors.joining(" "))))
+                    .collect(ImmutableList.toImmutableList());
+            return RollAnswer.builder()
+                    .answerFormatType(answerFormatType)
+                    .expression(batchExpression)
+                    .expressionLabel(label)
+                    .warning(getWarningFromRoll(rollResults.stream().flatMap(r -> r.getRolls().stream()).toList(), userLocale))
+                    .multiRollResults(rows)
+                    .build();
+        } catch (ExpressionException e) {
+            return RollAnswer.builder()
+                    .answerFormatType(answerFormatType)
+                    .expression(batchExpression)
+                    .errorMessage(e.getMessage())
+                    .errorLocation(getErrorLocationString(expression, e.getExpressionPosition()))
+                    .build();
+        } catch (RollBudgetExceededException e) {
+            return RollAnswer.builder()
+                    .answerFormatType(answerFormatType)
+                    .expression(batchExpression)
+                    .errorMessage(getBudgetExceededMessage(e, userLocale))
+                    .build();
+        }
+    }
+
+    public static String getBudgetExceededMessage(RollBudgetExceededException exception, Locale userLocale) {
+        return I18n.getMessage("diceEvaluator.reply.rollBudget." + exception.getReason().getTag(), userLocale);
+    }
+
     public boolean isValidExpression(String expression) {
-        return diceEvaluator.get(expression).isValid();
+        Optional<BatchExpression> batchExpression = getBatchExpression(expression);
+        if (batchExpression.isPresent()) {
+            if (validateBatchCount(batchExpression.get().count(), Locale.ENGLISH).isPresent()) {
+                return false;
+            }
+            expression = batchExpression.get().expression();
+        }
+        try {
+            return diceEvaluator.get(expression).isValid();
+        } catch (RollBudgetExceededException e) {
+            return false;
+        }
     }
 
     private String getWarningFromRoll(List<Roll> rolls, Locale userLocale) {
@@ -299,4 +436,6 @@ public class DiceEvaluatorAdapter {
         return randomElementsInRoll.stream().map(l -> l.stream().map(r -> r.getRollElement().toStringWithColorAndTag()).toList().toString()).collect(Collectors.joining(" "));
     }
 
+    public record BatchExpression(int count, @NonNull String expression) {
+    }
 }
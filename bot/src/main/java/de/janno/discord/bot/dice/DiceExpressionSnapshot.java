@@ -0,0 +1,104 @@
+package de.janno.discord.bot.dice;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local file with the most used dice expressions, so the roller cache can be filled after a restart. The file is a
+ * gzipped list of length prefixed UTF-8 expressions, ordered from the most to the least used.
+ */
+@Slf4j
+class DiceExpressionSnapshot {
+
+    private static final int VERSION = 1;
+    /**
+     * Far above the content of the configured top expressions
+     */
+    private static final int MAX_CONTENT_BYTES = 64 * 1024 * 1024;
+
+    private final Path file;
+
+    DiceExpressionSnapshot(@NonNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes first into a temporary file and replaces the old snapshot afterward, so a crash while writing doesn't
+     * corrupt the existing snapshot
+     */
+    void write(@NonNull List<String> expressions) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))) {
+            out.writeInt(VERSION);
+            out.writeInt(expressions.size());
+            for (String expression : expressions) {
+                byte[] bytes = expression.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns an empty list if there is no snapshot or it can't be read. The count and the lengths are checked against
+     * the remaining content, so a corrupt snapshot can't allocate more than the size of the content.
+     */
+    List<String> read() {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final byte[] content = in.readNBytes(MAX_CONTENT_BYTES + 1);
+            if (content.length > MAX_CONTENT_BYTES) {
+                throw new IOException("content is larger than %d bytes".formatted(MAX_CONTENT_BYTES));
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            int version = getInt(buffer);
+            if (version != VERSION) {
+                log.warn("Ignore dice expression snapshot with version {}", version);
+                return List.of();
+            }
+            int count = getInt(buffer);
+            //each expression has at least its length
+            if (count < 0 || count > buffer.remaining() / Integer.BYTES) {
+                throw new IOException("invalid expression count %d".formatted(count));
+            }
+            List<String> expressions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = getInt(buffer);
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("invalid expression length %d".formatted(length));
+                }
+                expressions.add(new String(content, buffer.position(), length, StandardCharsets.UTF_8));
+                buffer.position(buffer.position() + length);
+            }
+            return expressions;
+        } catch (IOException e) {
+            log.warn("Could not read dice expression snapshot {}", file, e);
+            return List.of();
+        }
+    }
+
+    private static int getInt(ByteBuffer buffer) throws EOFException {
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new EOFException("unexpected end of the content");
+        }
+        return buffer.getInt();
+    }
+}
@@ -0,0 +1,244 @@
+package de.janno.discord.bot.dice;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.Roll;
+import de.janno.evaluator.dice.RollElement;
+import de.janno.evaluator.dice.RollResult;
+import de.janno.evaluator.dice.Roller;
+import de.janno.evaluator.dice.random.GivenDiceNumberSupplier;
+import de.janno.evaluator.dice.random.NumberSupplier;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Probability distribution of the result of an expression, estimated by simulated rolls of the cached roller. The
+ * simulation runs in a separate fork join pool with a generator per worker and is limited by the number of rolls, the
+ * time and the number of parallel simulations. The complete results are cached by the canonical expression.
+ */
+@Slf4j
+public class DiceStatistics {
+
+    private static final int CHUNK_SIZE = 1_000;
+
+    private final CachingDiceEvaluator cachingDiceEvaluator;
+    private final SplitRandomNumberSupplier randomNumberSupplier = new SplitRandomNumberSupplier("L64X128MixRandom");
+    private final ForkJoinPool simulationPool;
+    private final int parallelism;
+    private final Semaphore simulationPermits;
+    private final Cache<String, Statistics> statisticsCache;
+
+    public DiceStatistics(@NonNull CachingDiceEvaluator cachingDiceEvaluator) {
+        this.cachingDiceEvaluator = cachingDiceEvaluator;
+        this.parallelism = Config.getInt("diceEvaluator.stats.parallelism", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        this.simulationPool = new ForkJoinPool(parallelism);
+        this.simulationPermits = new Semaphore(Config.getInt("diceEvaluator.stats.maxConcurrent", 2));
+        this.statisticsCache = CacheBuilder.newBuilder()
+                .maximumSize(Config.getLong("diceEvaluator.stats.cacheSize", 1_000))
+                .recordStats()
+                .build();
+        Gauge.builder("diceEvaluator.stats.cache", statisticsCache::size).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.stats.cache", () -> statisticsCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("diceEvaluator.stats.cache", () -> statisticsCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+    }
+
+    /**
+     * Numeric value of the roll, empty if the expression has multiple rolls or a result that is not a number
+     */
+    @VisibleForTesting
+    static OptionalDouble getNumericValue(@NonNull RollResult rollResult) {
+        if (rollResult.getRolls().size() != 1) {
+            return OptionalDouble.empty();
+        }
+        final Roll roll = rollResult.getRolls().getFirst();
+        BigDecimal sum = BigDecimal.ZERO;
+        for (RollElement element : roll.getElements()) {
+            Optional<BigDecimal> value = element.asDecimal();
+            if (value.isEmpty()) {
+                return OptionalDouble.empty();
+            }
+            sum = sum.add(value.get());
+        }
+        return OptionalDouble.of(sum.doubleValue());
+    }
+
+    /**
+     * Statistic of a valid expression. Throws a {@link RollBudgetExceededException} if already too many simulations are
+     * running.
+     */
+    public @NonNull Statistics getStatistics(@NonNull RollerOrError rollerOrError) {
+        final String key = CachingDiceEvaluator.canonicalize(rollerOrError.getExpression());
+        Statistics cached = statisticsCache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (!simulationPermits.tryAcquire()) {
+            throw new RollBudgetExceededException(RollBudgetExceededException.Reason.REJECTED);
+        }
+        try {
+            Statistics statistics = simulate(Objects.requireNonNull(rollerOrError.getRoller(), "statistic of invalid expression"));
+            //a simulation stopped by the time budget has too few rolls to be reused
+            if (!statistics.stoppedByTime()) {
+                statisticsCache.put(key, statistics);
+            }
+            return statistics;
+        } finally {
+            simulationPermits.release();
+        }
+    }
+
+    public @NonNull RollerOrError getRollerOrError(@NonNull String expression) {
+        return cachingDiceEvaluator.get(expression);
+    }
+
+    private Statistics simulate(Roller roller) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final int maxRolls = Config.getInt("diceEvaluator.stats.maxRolls", 100_000);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Config.getLong("diceEvaluator.stats.timeoutMs", 2_000));
+        final HistogramAggregator aggregator = new HistogramAggregator(Config.getInt("diceEvaluator.stats.maxDistinctValues", 10_000));
+        final AtomicInteger remainingRolls = new AtomicInteger(maxRolls);
+        final NumberSupplier numberSupplier = randomNumberSupplier.asNumberSupplier();
+
+        List<ForkJoinTask<?>> workers = IntStream.range(0, parallelism)
+                .mapToObj(_ -> simulationPool.submit(() -> simulateChunks(roller, numberSupplier, remainingRolls, deadline, aggregator)))
+                .toList();
+        workers.forEach(ForkJoinTask::join);
+
+        Statistics statistics = aggregator.toStatistics(maxRolls);
+        log.debug("simulated {} rolls in {}ms", statistics.rolls(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        return statistics;
+    }
+
+    private void simulateChunks(Roller roller, NumberSupplier numberSupplier, AtomicInteger remainingRolls, long deadline, HistogramAggregator aggregator) {
+        try {
+            RollExecutor.withDeadline(deadline, () -> {
+                //the roll of a chunk can be cancelled by the deadline while requesting a random number
+                final NumberSupplier budgetedNumberSupplier = (minExcl, maxIncl, dieId) -> {
+                    RollExecutor.checkBudget();
+                    return numberSupplier.get(minExcl, maxIncl, dieId);
+                };
+                int chunk;
+                while ((chunk = claimChunk(remainingRolls)) > 0) {
+                    final PartialHistogram partial = new PartialHistogram();
+                    final GivenDiceNumberSupplier chunkNumberSupplier = new GivenDiceNumberSupplier(budgetedNumberSupplier, List.of());
+                    for (int i = 0; i < chunk; i++) {
+                        partial.add(getNumericValue(roller.roll(chunkNumberSupplier)));
+                    }
+                    aggregator.merge(partial);
+                }
+                return null;
+            });
+        } catch (RollBudgetExceededException e) {
+            log.trace("simulation stopped by the time budget");
+        } catch (ExpressionException e) {
+            log.warn("Error in simulation: {}", e.getMessage());
+        }
+    }
+
+    private static int claimChunk(AtomicInteger remainingRolls) {
+        final int before = remainingRolls.getAndUpdate(r -> Math.max(0, r - CHUNK_SIZE));
+        return Math.min(before, CHUNK_SIZE);
+    }
+
+    /**
+     * Result counts of one chunk of rolls, only used by one worker
+     */
+    private static class PartialHistogram {
+        private final Map<Double, Long> counts = new HashMap<>();
+        private long nonNumeric;
+
+        void add(OptionalDouble value) {
+            if (value.isPresent()) {
+                counts.merge(value.getAsDouble(), 1L, Long::sum);
+            } else {
+                nonNumeric++;
+            }
+        }
+    }
+
+    /**
+     * Merges the partial histograms of the workers. The number of distinct values is bounded, values above the limit are
+     * only part of mean, standard deviation, min and max.
+     */
+    private static class HistogramAggregator {
+        private final int maxDistinctValues;
+        private final TreeMap<Double, Long> histogram = new TreeMap<>();
+        private long count;
+        private long nonNumeric;
+        private double sum;
+        private double sumOfSquares;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        HistogramAggregator(int maxDistinctValues) {
+            this.maxDistinctValues = maxDistinctValues;
+        }
+
+        synchronized void merge(PartialHistogram partial) {
+            nonNumeric += partial.nonNumeric;
+            partial.counts.forEach((value, valueCount) -> {
+                count += valueCount;
+                sum += value * valueCount;
+                sumOfSquares += value * value * valueCount;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                if (histogram.containsKey(value) || histogram.size() < maxDistinctValues) {
+                    histogram.merge(value, valueCount, Long::sum);
+                }
+            });
+        }
+
+        synchronized Statistics toStatistics(int maxRolls) {
+            final boolean stoppedByTime = count + nonNumeric < maxRolls;
+            if (count == 0) {
+                return new Statistics(0, nonNumeric, 0, 0, 0, 0, new TreeMap<>(), stoppedByTime);
+            }
+            final double mean = sum / count;
+            final double variance = Math.max(0, sumOfSquares / count - mean * mean);
+            return new Statistics(count, nonNumeric, mean, Math.sqrt(variance), min, max, new TreeMap<>(histogram), stoppedByTime);
+        }
+    }
+
+    /**
+     * @param rolls         number of simulated rolls with a numeric result
+     * @param nonNumeric    number of simulated rolls without a numeric result
+     * @param histogram     number of rolls for each result
+     * @param stoppedByTime the simulation was stopped by the time budget before all rolls were done
+     */
+    public record Statistics(long rolls, long nonNumeric, double mean, double standardDeviation, double min, double max,
+                             SortedMap<Double, Long> histogram, boolean stoppedByTime) {
+
+        /**
+         * The smallest result with at least the given fraction (0 to 1) of the rolls less or equal
+         */
+        public double percentile(double fraction) {
+            final long histogramCount = histogram.values().stream().mapToLong(Long::longValue).sum();
+            final double target = fraction * histogramCount;
+            long cumulative = 0;
+            for (Map.Entry<Double, Long> entry : histogram.entrySet()) {
+                cumulative += entry.getValue();
+                if (cumulative >= target) {
+                    return entry.getKey();
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package de.janno.discord.bot.dice;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The roll was not executed because the pool of its cost bucket was full, or it was cancelled because it exceeded the
+ * time budget
+ */
+@Getter
+public class RollBudgetExceededException extends RuntimeException {
+
+    private final Reason reason;
+
+    public RollBudgetExceededException(@NonNull Reason reason) {
+        super("roll " + reason.getTag());
+        this.reason = reason;
+    }
+
+    public enum Reason {
+        REJECTED,
+        TIMEOUT;
+
+        public @NonNull String getTag() {
+            return name().toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package de.janno.discord.bot.dice;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+
+/**
+ * Estimated cost of the roll of an expression. Each cost bucket is executed in its own pool, so expensive expressions
+ * can't block the cheap ones. Simple sums of dice are rolled directly in the calling thread.
+ */
+public enum RollCost {
+    SIMPLE,
+    LOW,
+    MEDIUM,
+    HIGH;
+
+    private static final int MEDIUM_SCORE = 200;
+    private static final int HIGH_SCORE = 2_000;
+    private static final long MAX_NUMBER_SCORE = 100_000;
+
+    /**
+     * Static estimation from the expression: long expressions, deep nesting and large numbers (number of dice,
+     * repetitions) increase the cost
+     */
+    public static @NonNull RollCost estimate(@NonNull String expression) {
+        long score = expression.length();
+        int depth = 0;
+        int maxDepth = 0;
+        long numberScore = 0;
+        long currentNumber = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (Character.isDigit(c)) {
+                currentNumber = Math.min(currentNumber * 10 + (c - '0'), MAX_NUMBER_SCORE);
+                continue;
+            }
+            numberScore = Math.min(numberScore + currentNumber, MAX_NUMBER_SCORE);
+            currentNumber = 0;
+            if (c == '(') {
+                depth++;
+                maxDepth = Math.max(maxDepth, depth);
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            }
+        }
+        numberScore = Math.min(numberScore + currentNumber, MAX_NUMBER_SCORE);
+        score += 10L * maxDepth + numberScore / 10;
+        if (score >= HIGH_SCORE) {
+            return HIGH;
+        }
+        if (score >= MEDIUM_SCORE) {
+            return MEDIUM;
+        }
+        return LOW;
+    }
+
+    /**
+     * Cost by the measured duration of a roll
+     */
+    public static @NonNull RollCost ofDuration(@NonNull Duration duration) {
+        if (duration.toMillis() >= 10) {
+            return HIGH;
+        }
+        if (duration.toMillis() >= 1) {
+            return MEDIUM;
+        }
+        return LOW;
+    }
+
+    public @NonNull RollCost atLeast(@NonNull RollCost other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+
+    public @NonNull String getTag() {
+        return name().toLowerCase();
+    }
+}
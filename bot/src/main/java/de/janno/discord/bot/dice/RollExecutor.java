@@ -0,0 +1,146 @@
+package de.janno.discord.bot.dice;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.janno.discord.bot.BotMetrics;
+import de.janno.evaluator.dice.ExpressionException;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Executes rolls with a wall-clock budget. Each {@link RollCost} has its own bounded pool and queue, a roll is rejected
+ * if the queue of its cost is full. The cancellation is cooperative: the number supplier checks the deadline of the
+ * current roll for each random number with {@link #checkBudget()}.
+ */
+@Slf4j
+class RollExecutor {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+    /**
+     * Additional waiting time for rolls that don't request random numbers after the deadline, before the roll thread is
+     * interrupted
+     */
+    private static final long CANCEL_GRACE_MS = 100;
+
+    private final Map<RollCost, ThreadPoolExecutor> executors = new EnumMap<>(RollCost.class);
+
+    RollExecutor() {
+        for (RollCost cost : RollCost.values()) {
+            if (cost == RollCost.SIMPLE) {
+                continue;
+            }
+            final int threads = Config.getInt("diceEvaluator.rollBudget.%s.threads".formatted(cost.getTag()), defaultThreads(cost));
+            final int queueSize = Config.getInt("diceEvaluator.rollBudget.%s.queueSize".formatted(cost.getTag()), defaultQueueSize(cost));
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    Thread.ofPlatform().name("roll-%s-".formatted(cost.getTag()), 0).daemon().factory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            executors.put(cost, executor);
+            Gauge.builder("diceEvaluator.rollExecutor", () -> executor.getQueue().size()).tags(Tags.of("cost", cost.getTag(), "stats", "queue")).register(globalRegistry);
+            Gauge.builder("diceEvaluator.rollExecutor", executor::getActiveCount).tags(Tags.of("cost", cost.getTag(), "stats", "active")).register(globalRegistry);
+        }
+    }
+
+    private static int defaultThreads(RollCost cost) {
+        return switch (cost) {
+            case LOW -> Math.max(2, Runtime.getRuntime().availableProcessors());
+            case MEDIUM -> Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            case HIGH -> 1;
+            case SIMPLE -> throw new IllegalArgumentException("simple rolls have no pool");
+        };
+    }
+
+    private static int defaultQueueSize(RollCost cost) {
+        return switch (cost) {
+            case LOW -> 1000;
+            case MEDIUM -> 100;
+            case HIGH -> 10;
+            case SIMPLE -> throw new IllegalArgumentException("simple rolls have no pool");
+        };
+    }
+
+    /**
+     * Throws a {@link RollBudgetExceededException} if the deadline of the roll in the current thread is over or the
+     * thread was interrupted. Does nothing outside a budgeted roll.
+     */
+    static void checkBudget() {
+        final Long deadline = DEADLINE.get();
+        if (deadline != null && (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted())) {
+            throw new RollBudgetExceededException(RollBudgetExceededException.Reason.TIMEOUT);
+        }
+    }
+
+    /**
+     * Executes the roll in the current thread, {@link #checkBudget()} throws after the deadline (in {@link System#nanoTime()})
+     */
+    static <T> T withDeadline(long deadline, @NonNull RollCall<T> rollCall) throws ExpressionException {
+        DEADLINE.set(deadline);
+        try {
+            checkBudget();
+            return rollCall.call();
+        } finally {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Executes the roll in the pool of the cost and waits for the result. The budget starts with the submission, so the
+     * waiting time in the queue is part of it. Simple rolls are executed directly without budget.
+     */
+    <T> T execute(@NonNull RollCost cost, @NonNull RollCall<T> rollCall) throws ExpressionException {
+        if (cost == RollCost.SIMPLE) {
+            return rollCall.call();
+        }
+        final long budgetMs = Config.getLong("diceEvaluator.rollBudget.timeoutMs", 3000);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        final Future<T> future;
+        try {
+            future = executors.get(cost).submit(() -> withDeadline(deadline, rollCall));
+        } catch (RejectedExecutionException e) {
+            throw budgetExceeded(cost, RollBudgetExceededException.Reason.REJECTED);
+        }
+        try {
+            return future.get(budgetMs + CANCEL_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw budgetExceeded(cost, RollBudgetExceededException.Reason.TIMEOUT);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case RollBudgetExceededException budgetExceededException ->
+                        throw budgetExceeded(cost, budgetExceededException.getReason());
+                case ExpressionException expressionException -> throw expressionException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getQueueSize(@NonNull RollCost cost) {
+        return executors.get(cost).getQueue().size();
+    }
+
+    private static RollBudgetExceededException budgetExceeded(RollCost cost, RollBudgetExceededException.Reason reason) {
+        BotMetrics.incrementRollBudgetExceeded(cost.getTag(), reason.getTag());
+        log.warn("roll with cost {} {}", cost.getTag(), reason.getTag());
+        return new RollBudgetExceededException(reason);
+    }
+
+    @FunctionalInterface
+    interface RollCall<T> {
+        T call() throws ExpressionException;
+    }
+}
@@ -1,10 +1,12 @@
 package de.janno.discord.bot.dice;
 
 import de.janno.evaluator.dice.Roller;
+import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.Value;
 
 @Value
+@AllArgsConstructor
 public class RollerOrError {
     @NonNull
     String expression;
@@ -12,4 +14,10 @@ public class RollerOrError {
     boolean valid;
     String errorMessage;
     String errorExpressionContext;
+    @NonNull
+    RollCost cost;
+
+    public RollerOrError(@NonNull String expression, Roller roller, boolean valid, String errorMessage, String errorExpressionContext) {
+        this(expression, roller, valid, errorMessage, errorExpressionContext, RollCost.LOW);
+    }
 }
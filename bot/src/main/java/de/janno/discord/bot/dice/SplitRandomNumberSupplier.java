@@ -0,0 +1,106 @@
+package de.janno.discord.bot.dice;
+
+import com.google.common.annotations.VisibleForTesting;
+import de.janno.evaluator.dice.random.NumberSupplier;
+import de.janno.evaluator.dice.random.RandomNumberSupplier;
+import io.avaje.config.Config;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.security.SecureRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Random numbers from a generator per thread, so parallel rolls don't share one generator. The generators are split
+ * from a root generator that is seeded by a {@link SecureRandom}. With a reseed interval the root is replaced
+ * periodically with a new seeded one and each thread splits a new generator with its next number.
+ */
+@Slf4j
+public class SplitRandomNumberSupplier {
+
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private final RandomGeneratorFactory<RandomGenerator> factory;
+    private final ThreadLocal<ThreadGenerator> threadGenerator = new ThreadLocal<>();
+    private volatile Root root;
+
+    @VisibleForTesting
+    SplitRandomNumberSupplier(@NonNull String algorithm) {
+        this.factory = RandomGeneratorFactory.of(algorithm);
+        if (!factory.isSplittable()) {
+            throw new IllegalArgumentException("Random generator %s is not splittable".formatted(algorithm));
+        }
+        this.root = new Root(createRootGenerator(), 0);
+    }
+
+    /**
+     * Creates the supplier with the configured algorithm and starts the reseeding if a reseed interval is configured
+     */
+    public static @NonNull NumberSupplier create() {
+        SplitRandomNumberSupplier supplier = new SplitRandomNumberSupplier(Config.get("diceEvaluator.random.algorithm", "L64X128MixRandom"));
+        final long reseedIntervalMs = Config.getLong("diceEvaluator.random.reseedIntervalMs", 0);
+        if (reseedIntervalMs > 0) {
+            ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("randomReseed").daemon().factory());
+            executorService.scheduleWithFixedDelay(supplier::reseed, reseedIntervalMs, reseedIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("use per thread random number generator {} with reseed interval {}ms", supplier.factory.name(), reseedIntervalMs);
+        return supplier.asNumberSupplier();
+    }
+
+    private RandomGenerator.SplittableGenerator createRootGenerator() {
+        return (RandomGenerator.SplittableGenerator) factory.create(SEED_SOURCE.nextLong());
+    }
+
+    /**
+     * The invalid ranges are handled by the default supplier, so the error messages are the same
+     */
+    NumberSupplier asNumberSupplier() {
+        final RandomNumberSupplier defaultSupplier = new RandomNumberSupplier();
+        return (minExcl, maxIncl, dieId) -> {
+            if (minExcl >= maxIncl) {
+                return defaultSupplier.get(minExcl, maxIncl, dieId);
+            }
+            return nextInt(minExcl, maxIncl);
+        };
+    }
+
+    /**
+     * Random number between minExcl (exclusive) and maxIncl (inclusive), minExcl must be smaller than maxIncl
+     */
+    @VisibleForTesting
+    int nextInt(int minExcl, int maxIncl) {
+        return (int) getGenerator().nextLong(minExcl + 1L, maxIncl + 1L);
+    }
+
+    private RandomGenerator getGenerator() {
+        final Root currentRoot = root;
+        ThreadGenerator current = threadGenerator.get();
+        if (current == null || current.generation() != currentRoot.generation()) {
+            current = new ThreadGenerator(currentRoot.split(), currentRoot.generation());
+            threadGenerator.set(current);
+        }
+        return current.generator();
+    }
+
+    @VisibleForTesting
+    void reseed() {
+        root = new Root(createRootGenerator(), root.generation() + 1);
+        log.debug("reseeded random number generator");
+    }
+
+    private record Root(RandomGenerator.SplittableGenerator generator, long generation) {
+        /**
+         * Splitting changes the state of the root and is synchronized, but only done once per thread and generation
+         */
+        synchronized RandomGenerator split() {
+            return generator.split();
+        }
+    }
+
+    private record ThreadGenerator(RandomGenerator generator, long generation) {
+    }
+}
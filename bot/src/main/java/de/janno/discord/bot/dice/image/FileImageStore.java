@@ -0,0 +1,152 @@
+package de.janno.discord.bot.dice.image;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Each image is a png file in the folder of its style and color, with a csv file that maps the cache names to the
+ * file names.
+ */
+@Slf4j
+public class FileImageStore implements ImageStore {
+
+    static final String CACHE_INDEX_FILE = "imageCacheName.csv";
+    private final Path root;
+
+    public FileImageStore(@NonNull Path root, @NonNull Collection<String> folders) {
+        this.root = root;
+        folders.forEach(this::createFolderIfMissing);
+    }
+
+    private void createFolderIfMissing(String folder) {
+        try {
+            Files.createDirectories(root.resolve(folder));
+            Path cacheIndex = root.resolve(folder).resolve(CACHE_INDEX_FILE);
+            if (!Files.exists(cacheIndex)) {
+                Files.createFile(cacheIndex);
+            }
+        } catch (FileAlreadyExistsException e) {
+            //created in between
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path getFile(String folder, String hashName) {
+        return root.resolve(folder).resolve(hashName + ".png");
+    }
+
+    @Override
+    public byte[] get(@NonNull String folder, @NonNull String hashName) {
+        try {
+            return Files.readAllBytes(getFile(folder, hashName));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read image file {}", getFile(folder, hashName), e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes first into a temporary file that is renamed afterward, so a file in the cache is always complete
+     */
+    @Override
+    public void put(@NonNull String folder, @NonNull String hashName, @NonNull String name, @NonNull byte[] imageBytes) throws IOException {
+        final Path outputFile = getFile(folder, hashName);
+        if (Files.exists(outputFile)) {
+            return;
+        }
+        createFolderIfMissing(folder);
+        Path tempFile = outputFile.resolveSibling(outputFile.getFileName() + ".tmp");
+        Files.write(tempFile, imageBytes);
+        Files.move(tempFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.writeString(
+                root.resolve(folder).resolve(CACHE_INDEX_FILE),
+                "%s;%s\n".formatted(name, outputFile.getFileName()),
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Deletes the files and rewrites the csv file without them
+     */
+    @Override
+    public void remove(@NonNull String folder, @NonNull Collection<String> hashNames) throws IOException {
+        for (String hashName : hashNames) {
+            Files.deleteIfExists(getFile(folder, hashName));
+        }
+        final Path cacheIndex = root.resolve(folder).resolve(CACHE_INDEX_FILE);
+        if (!Files.exists(cacheIndex)) {
+            return;
+        }
+        final Set<String> removedFiles = hashNames.stream().map(h -> h + ".png").collect(Collectors.toSet());
+        final List<String> lines;
+        try (Stream<String> indexLines = Files.lines(cacheIndex)) {
+            lines = indexLines
+                    .filter(l -> !removedFiles.contains(l.substring(l.lastIndexOf(';') + 1)))
+                    .toList();
+        }
+        final Path tempFile = cacheIndex.resolveSibling(CACHE_INDEX_FILE + ".tmp");
+        Files.write(tempFile, lines);
+        Files.move(tempFile, cacheIndex, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The last use is the last modified time of the file
+     */
+    @Override
+    public void setLastUsed(@NonNull String folder, @NonNull Map<String, Long> lastUsed) throws IOException {
+        for (Map.Entry<String, Long> use : lastUsed.entrySet()) {
+            try {
+                Files.setLastModifiedTime(getFile(folder, use.getKey()), FileTime.fromMillis(use.getValue()));
+            } catch (NoSuchFileException e) {
+                //removed in between
+            }
+        }
+    }
+
+    /**
+     * The last modified time of the file is used as the last use
+     */
+    @Override
+    public List<StoredImage> list(@NonNull String folder) throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve(folder))) {
+            return files
+                    .filter(f -> f.getFileName().toString().endsWith(".png"))
+                    .map(f -> {
+                        try {
+                            final String fileName = f.getFileName().toString();
+                            return new StoredImage(fileName.substring(0, fileName.length() - 4), Files.size(f), Files.getLastModifiedTime(f).toMillis());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .sorted(Comparator.comparingLong(StoredImage::lastUsed))
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public long getEntries(@NonNull String folder) {
+        try (Stream<Path> files = Files.list(root.resolve(folder))) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".png")).count();
+        } catch (IOException e) {
+            log.error(e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import de.janno.discord.bot.BotMetrics;
+import lombok.NonNull;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+
+/**
+ * Bar chart of the result distribution of a dice expression. Like the roll images the png is only encoded when the
+ * answer is sent.
+ */
+public class HistogramImageCreator {
+
+    private static final int MAX_BARS = 40;
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 240;
+    private static final int LABEL_HEIGHT = 20;
+
+    /**
+     * Groups the results into at most maxBars bars of the same value range. Each bar has the smallest value of its range
+     * as label.
+     */
+    @VisibleForTesting
+    static List<Bar> createBars(@NonNull SortedMap<Double, Long> histogram, int maxBars) {
+        if (histogram.size() <= maxBars) {
+            return histogram.entrySet().stream().map(e -> new Bar(e.getKey(), e.getValue())).toList();
+        }
+        final double min = histogram.firstKey();
+        final double binWidth = (histogram.lastKey() - min) / maxBars;
+        final long[] counts = new long[maxBars];
+        for (Map.Entry<Double, Long> entry : histogram.entrySet()) {
+            int bin = (int) Math.min(maxBars - 1, Math.floor((entry.getKey() - min) / binWidth));
+            counts[bin] += entry.getValue();
+        }
+        final List<Bar> bars = new ArrayList<>(maxBars);
+        for (int i = 0; i < maxBars; i++) {
+            bars.add(new Bar(min + i * binWidth, counts[i]));
+        }
+        return bars;
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value)) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    public Supplier<? extends InputStream> createHistogramImage(@NonNull SortedMap<Double, Long> histogram) {
+        if (histogram.isEmpty()) {
+            return null;
+        }
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final List<Bar> bars = createBars(histogram, MAX_BARS);
+        final long maxCount = bars.stream().mapToLong(Bar::count).max().orElse(1);
+        final int barWidth = WIDTH / bars.size();
+        final int chartHeight = HEIGHT - LABEL_HEIGHT;
+
+        BufferedImage image = new BufferedImage(barWidth * bars.size(), HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 11));
+        final FontMetrics fontMetrics = g.getFontMetrics();
+        //only every n-th label, so they don't overlap
+        final int labelStep = Math.max(1, (int) Math.ceil((double) (fontMetrics.stringWidth("-000") + 4) / barWidth));
+        for (int i = 0; i < bars.size(); i++) {
+            final Bar bar = bars.get(i);
+            final int barHeight = (int) Math.round((double) bar.count() / maxCount * (chartHeight - 2));
+            final int x = i * barWidth;
+            g.setColor(Color.lightGray);
+            g.fillRect(x + 1, chartHeight - barHeight, barWidth - 2, barHeight);
+            g.setColor(Color.black);
+            g.drawRect(x + 1, chartHeight - barHeight, barWidth - 2, barHeight);
+            if (i % labelStep == 0) {
+                final String label = formatValue(bar.value());
+                g.setColor(Color.white);
+                g.drawString(label, x + (barWidth - fontMetrics.stringWidth(label)) / 2, HEIGHT - 5);
+            }
+        }
+        g.dispose();
+
+        return () -> {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(image, "png", baos);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            BotMetrics.histogramCreationTimer(stopwatch.elapsed());
+            return new ByteArrayInputStream(baos.toByteArray());
+        };
+    }
+
+    @VisibleForTesting
+    record Bar(double value, long count) {
+    }
+}
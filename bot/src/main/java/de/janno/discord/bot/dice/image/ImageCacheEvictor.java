@@ -0,0 +1,232 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Keeps the stored images in a budget of bytes per folder and in total. The last use of each image is tracked in memory,
+ * on start it is taken from the store by {@link #load()}. The uses are written back to the store in batches by
+ * {@link #persistUses()}. If a budget is exceeded, the least recently used images are removed until the
+ * usage is below {@link #LOW_WATERMARK} of the budget, so the sorting is not needed after each new image.
+ * <p>
+ * {@link #load()}, {@link #add}, {@link #persistUses()} and {@link #evictIfOverBudget()} must be called by the thread
+ * that stores the images.
+ */
+@Slf4j
+class ImageCacheEvictor {
+
+    private static final double LOW_WATERMARK = 0.9;
+    private final ImageStore imageStore;
+    private final Collection<String> folderNames;
+    private final long maxBytes;
+    private final long maxBytesPerFolder;
+    private final Map<String, Map<String, Entry>> folders = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> folderBytes = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * Order of the uses with the same time
+     */
+    private final AtomicLong useSequence = new AtomicLong();
+    /**
+     * Uses that are not yet written into the store, by folder and hash name
+     */
+    private final Map<String, Map<String, Long>> unpersistedUses = new ConcurrentHashMap<>();
+
+    ImageCacheEvictor(@NonNull ImageStore imageStore, @NonNull Collection<String> folderNames, long maxBytes, long maxBytesPerFolder) {
+        this.imageStore = imageStore;
+        this.folderNames = List.copyOf(folderNames);
+        this.maxBytes = maxBytes;
+        this.maxBytesPerFolder = maxBytesPerFolder;
+        Gauge.builder("imageCache.disk", bytes::get).tags(Tags.of("stats", "bytes")).register(globalRegistry);
+        Gauge.builder("imageCache.disk", this::getEntries).tags(Tags.of("stats", "entries")).register(globalRegistry);
+        Gauge.builder("imageCache.disk", evictions::get).tags(Tags.of("stats", "evictions")).register(globalRegistry);
+    }
+
+    /**
+     * Reads the stored images of all folders, must be called before the first {@link #add}
+     */
+    void load() {
+        folderNames.forEach(this::load);
+    }
+
+    private void load(String folder) {
+        final Map<String, Entry> entries = getFolder(folder);
+        try {
+            for (ImageStore.StoredImage storedImage : imageStore.list(folder)) {
+                entries.put(storedImage.hashName(), new Entry(storedImage.bytes(), storedImage.lastUsed(), useSequence.incrementAndGet()));
+                folderBytes.get(folder).addAndGet(storedImage.bytes());
+                bytes.addAndGet(storedImage.bytes());
+            }
+            log.info("Cache files for {}: {}", folder, entries.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not list the stored images of {}", folder, e);
+        }
+    }
+
+    private Map<String, Entry> getFolder(String folder) {
+        folderBytes.computeIfAbsent(folder, _ -> new AtomicLong());
+        return folders.computeIfAbsent(folder, _ -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Marks the image as used, if it is stored
+     */
+    void recordUse(@NonNull String folder, @NonNull String hashName) {
+        final Map<String, Entry> entries = folders.get(folder);
+        if (entries == null) {
+            return;
+        }
+        final Entry entry = entries.get(hashName);
+        if (entry != null) {
+            final long time = System.currentTimeMillis();
+            entry.use(time, useSequence.incrementAndGet());
+            unpersistedUses.computeIfAbsent(folder, _ -> new ConcurrentHashMap<>()).put(hashName, time);
+        }
+    }
+
+    /**
+     * Writes the uses since the last call into the store
+     */
+    void persistUses() {
+        unpersistedUses.forEach((folder, uses) -> {
+            if (uses.isEmpty()) {
+                return;
+            }
+            final Map<String, Long> batch = Map.copyOf(uses);
+            //a use in between stays for the next call
+            batch.forEach(uses::remove);
+            try {
+                imageStore.setLastUsed(folder, batch);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not persist the last use of {} images in {}", batch.size(), folder, e);
+            }
+        });
+    }
+
+    /**
+     * Adds a new stored image
+     */
+    void add(@NonNull String folder, @NonNull String hashName, long imageBytes) {
+        final Entry previous = getFolder(folder).put(hashName, new Entry(imageBytes, System.currentTimeMillis(), useSequence.incrementAndGet()));
+        final long addedBytes = imageBytes - (previous == null ? 0 : previous.bytes);
+        folderBytes.get(folder).addAndGet(addedBytes);
+        bytes.addAndGet(addedBytes);
+    }
+
+    void evictIfOverBudget() {
+        folders.keySet().forEach(folder -> {
+            if (folderBytes.get(folder).get() > maxBytesPerFolder) {
+                evict(getFolderEntries(folder), (long) (maxBytesPerFolder * LOW_WATERMARK));
+            }
+        });
+        if (bytes.get() > maxBytes) {
+            evict(folders.keySet().stream().flatMap(f -> getFolderEntries(f).stream()).toList(), (long) (maxBytes * LOW_WATERMARK));
+        }
+    }
+
+    private List<FolderEntry> getFolderEntries(String folder) {
+        return folders.get(folder).entrySet().stream()
+                .map(e -> e.getValue().toFolderEntry(folder, e.getKey()))
+                .toList();
+    }
+
+    /**
+     * Removes the least recently used of the entries until the bytes of the entries are at most the target
+     */
+    private void evict(List<FolderEntry> entries, long targetBytes) {
+        long entryBytes = entries.stream().mapToLong(FolderEntry::bytes).sum();
+        final List<FolderEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(FolderEntry::lastUsed).thenComparingLong(FolderEntry::sequence));
+        final Map<String, List<String>> toRemove = new HashMap<>();
+        for (FolderEntry folderEntry : sorted) {
+            if (entryBytes <= targetBytes) {
+                break;
+            }
+            toRemove.computeIfAbsent(folderEntry.folder(), _ -> new ArrayList<>()).add(folderEntry.hashName());
+            entryBytes -= folderEntry.bytes();
+        }
+        toRemove.forEach(this::remove);
+    }
+
+    private void remove(String folder, List<String> hashNames) {
+        try {
+            imageStore.remove(folder, hashNames);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not remove {} images from {}", hashNames.size(), folder, e);
+            return;
+        }
+        final Map<String, Entry> entries = folders.get(folder);
+        long removedBytes = 0;
+        for (String hashName : hashNames) {
+            final Entry entry = entries.remove(hashName);
+            if (entry != null) {
+                removedBytes += entry.bytes;
+            }
+        }
+        final Map<String, Long> uses = unpersistedUses.get(folder);
+        if (uses != null) {
+            hashNames.forEach(uses::remove);
+        }
+        folderBytes.get(folder).addAndGet(-removedBytes);
+        bytes.addAndGet(-removedBytes);
+        evictions.addAndGet(hashNames.size());
+        log.info("Evicted {} images with {} bytes from {}", hashNames.size(), removedBytes, folder);
+    }
+
+    @VisibleForTesting
+    long getBytes() {
+        return bytes.get();
+    }
+
+    long getEntries() {
+        return folders.values().stream().mapToLong(Map::size).sum();
+    }
+
+    @VisibleForTesting
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    @VisibleForTesting
+    Set<String> getHashNames(String folder) {
+        return Set.copyOf(folders.getOrDefault(folder, Map.of()).keySet());
+    }
+
+    private static class Entry {
+        private final long bytes;
+        private long lastUsed;
+        private long sequence;
+
+        Entry(long bytes, long lastUsed, long sequence) {
+            this.bytes = bytes;
+            this.lastUsed = lastUsed;
+            this.sequence = sequence;
+        }
+
+        synchronized void use(long time, long sequence) {
+            this.lastUsed = time;
+            this.sequence = sequence;
+        }
+
+        synchronized FolderEntry toFolderEntry(String folder, String hashName) {
+            return new FolderEntry(folder, hashName, bytes, lastUsed, sequence);
+        }
+    }
+
+    /**
+     * Copy of the last use, so it doesn't change while sorting
+     */
+    private record FolderEntry(String folder, String hashName, long bytes, long lastUsed, long sequence) {
+    }
+}
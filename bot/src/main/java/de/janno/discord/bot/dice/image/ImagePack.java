@@ -0,0 +1,551 @@
+package de.janno.discord.bot.dice.image;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The images of one style folder in a single append-only pack file, with a memory-mapped open addressing hash index
+ * from the key to the offset and length of the record in the pack.
+ * <p>
+ * Pack file: header (magic, version, pack id), then records of magic, 32 byte key, length, crc32 and the png bytes.
+ * A removed image is a record with the remove magic and without data.
+ * <br>
+ * Index file: header (magic, version, pack id, indexed pack length, capacity, count), then slots of key prefix,
+ * offset, length and the epoch minute of the last use (0 if unknown). The slot of a removed image keeps the prefix and
+ * has the length -1, so the probing continues. The last use is only in the index and is lost if the index is rebuilt.
+ * <p>
+ * The pack is the source of truth. On open, records after the indexed pack length are validated and added to the index,
+ * a torn record at the end is truncated. If the index is missing or belongs to another pack, it is rebuilt from the
+ * pack. Reads don't lock, they verify the key and the crc of the record and a concurrent or torn index slot results in
+ * a miss. Writes must be done by one thread at a time.
+ */
+@Slf4j
+class ImagePack implements Closeable {
+
+    static final String PACK_FILE = "images.pack";
+    static final String INDEX_FILE = "images.idx";
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final int PACK_MAGIC = 0x4950414B; //IPAK
+    private static final int INDEX_MAGIC = 0x49494458; //IIDX
+    private static final int RECORD_MAGIC = 0x52454331; //REC1
+    private static final int REMOVE_MAGIC = 0x52454D31; //REM1
+    private static final int VERSION = 1;
+    private static final int KEY_LENGTH = 32;
+    private static final int PACK_HEADER = 16;
+    private static final int RECORD_HEADER = 4 + KEY_LENGTH + 4 + 4;
+    private static final int INDEX_HEADER = 32;
+    private static final int SLOT = 24;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+    private static final long EMPTY = 0;
+    private static final int REMOVED = -1;
+    /**
+     * Result of {@link #insertInto} if the slot was empty
+     */
+    private static final int NEW_SLOT = Integer.MIN_VALUE;
+    private static final SecureRandom PACK_ID_SOURCE = new SecureRandom();
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    private final Path folder;
+    private volatile State state;
+    /**
+     * Bytes of the pack header and the indexed records, only changed by the writing thread
+     */
+    private long liveBytes;
+    /**
+     * Slots of removed images, only changed by the writing thread
+     */
+    private int removedSlots;
+
+    private ImagePack(Path folder, State state) {
+        this.folder = folder;
+        this.state = state;
+    }
+
+    static @NonNull ImagePack open(@NonNull Path folder) throws IOException {
+        Files.createDirectories(folder);
+        //leftovers of an interrupted compaction, the old files are still complete
+        Files.deleteIfExists(folder.resolve(PACK_FILE + COMPACT_SUFFIX));
+        Files.deleteIfExists(folder.resolve(INDEX_FILE + COMPACT_SUFFIX));
+
+        final FileChannel pack = FileChannel.open(folder.resolve(PACK_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long packId = readOrCreatePackHeader(pack);
+        final FileChannel indexChannel = FileChannel.open(folder.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer index = mapExistingIndex(indexChannel, packId, pack.size());
+        if (index == null) {
+            log.info("Rebuild image index in {}", folder);
+            index = createIndex(indexChannel, packId, INITIAL_CAPACITY);
+        }
+        final ImagePack imagePack = new ImagePack(folder, new State(pack, indexChannel, index, index.getInt(24)));
+        imagePack.countSlots();
+        imagePack.recover();
+        return imagePack;
+    }
+
+    private static long readOrCreatePackHeader(FileChannel pack) throws IOException {
+        if (pack.size() < PACK_HEADER) {
+            final long packId = PACK_ID_SOURCE.nextLong();
+            pack.truncate(0);
+            writeFully(pack, ByteBuffer.allocate(PACK_HEADER).putInt(PACK_MAGIC).putInt(VERSION).putLong(packId).flip(), 0);
+            return packId;
+        }
+        final ByteBuffer header = readFully(pack, 0, PACK_HEADER);
+        if (header.getInt(0) != PACK_MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not a image pack with version %d".formatted(VERSION));
+        }
+        return header.getLong(8);
+    }
+
+    /**
+     * Null if there is no valid index for this pack
+     */
+    private static MappedByteBuffer mapExistingIndex(FileChannel indexChannel, long packId, long packSize) throws IOException {
+        if (indexChannel.size() < INDEX_HEADER) {
+            return null;
+        }
+        final ByteBuffer header = readFully(indexChannel, 0, INDEX_HEADER);
+        final int capacity = header.getInt(24);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION || header.getLong(8) != packId
+                || header.getLong(16) > packSize || Integer.bitCount(capacity) != 1
+                || indexChannel.size() < INDEX_HEADER + (long) capacity * SLOT) {
+            return null;
+        }
+        return indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * SLOT);
+    }
+
+    /**
+     * The magic is written last, an index that was not completely created is invalid
+     */
+    private static MappedByteBuffer createIndex(FileChannel indexChannel, long packId, int capacity) throws IOException {
+        indexChannel.truncate(0);
+        final MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER + (long) capacity * SLOT);
+        index.putInt(4, VERSION);
+        index.putLong(8, packId);
+        index.putLong(16, PACK_HEADER);
+        index.putInt(24, capacity);
+        index.putInt(28, 0);
+        index.putInt(0, INDEX_MAGIC);
+        return index;
+    }
+
+    private static long keyPrefix(byte[] key) {
+        long prefix = ByteBuffer.wrap(key).getLong();
+        //0 marks an empty slot
+        return prefix == EMPTY ? 1 : prefix;
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER + slot * SLOT;
+    }
+
+    private static int toMinute(long epochMillis) {
+        return (int) (epochMillis / MILLIS_PER_MINUTE);
+    }
+
+    private static long crc(byte[] data) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return crc32.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Adds the records after the indexed pack length to the index and truncates an incomplete or corrupt end
+     */
+    private void recover() throws IOException {
+        final State current = state;
+        final long packSize = current.pack().size();
+        long position = current.index().getLong(16);
+        int recovered = 0;
+        while (position + RECORD_HEADER <= packSize) {
+            final ByteBuffer header = readFully(current.pack(), position, RECORD_HEADER);
+            final int length = header.getInt(4 + KEY_LENGTH);
+            if (header.getInt(0) == REMOVE_MAGIC && length == 0) {
+                final byte[] key = new byte[KEY_LENGTH];
+                header.get(4, key);
+                markRemoved(key);
+                position += RECORD_HEADER;
+                recovered++;
+                continue;
+            }
+            if (header.getInt(0) != RECORD_MAGIC || length < 0 || position + RECORD_HEADER + length > packSize) {
+                break;
+            }
+            final byte[] data = readFully(current.pack(), position + RECORD_HEADER, length).array();
+            if ((int) crc(data) != header.getInt(4 + KEY_LENGTH + 4)) {
+                break;
+            }
+            final byte[] key = new byte[KEY_LENGTH];
+            header.get(4, key);
+            insert(key, position, length);
+            position += RECORD_HEADER + length;
+            recovered++;
+        }
+        if (position < packSize) {
+            log.warn("Truncate {} bytes of incomplete image records in {}", packSize - position, folder);
+            current.pack().truncate(position);
+        }
+        state.index().putLong(16, position);
+        if (recovered > 0) {
+            log.info("Recovered {} image records into the index of {}", recovered, folder);
+        }
+    }
+
+    /**
+     * The png bytes or null if the key is not in the pack
+     */
+    byte[] get(@NonNull byte[] key) {
+        final State current = state;
+        final long prefix = keyPrefix(key);
+        final int mask = current.capacity() - 1;
+        int slot = (int) (prefix ^ (prefix >>> 32)) & mask;
+        try {
+            for (int i = 0; i < current.capacity(); i++) {
+                final int position = slotPosition(slot);
+                final long slotPrefix = current.index().getLong(position);
+                if (slotPrefix == EMPTY) {
+                    return null;
+                }
+                if (slotPrefix == prefix) {
+                    final byte[] data = readRecord(current.pack(), current.index().getLong(position + 8), current.index().getInt(position + 16), key);
+                    if (data != null) {
+                        return data;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+        } catch (IOException | IndexOutOfBoundsException e) {
+            //the pack was replaced by a compaction or the slot was read while it was written
+            log.debug("Could not read image from {}: {}", folder, e.getMessage());
+        }
+        return null;
+    }
+
+    private byte[] readRecord(FileChannel pack, long offset, int length, byte[] key) throws IOException {
+        if (offset < PACK_HEADER || length < 0 || offset + RECORD_HEADER + length > pack.size()) {
+            return null;
+        }
+        final ByteBuffer record = readFully(pack, offset, RECORD_HEADER + length);
+        if (record.getInt(0) != RECORD_MAGIC || record.getInt(4 + KEY_LENGTH) != length
+                || !Arrays.equals(key, 0, KEY_LENGTH, record.array(), 4, 4 + KEY_LENGTH)) {
+            return null;
+        }
+        final byte[] data = Arrays.copyOfRange(record.array(), RECORD_HEADER, RECORD_HEADER + length);
+        if ((int) crc(data) != record.getInt(4 + KEY_LENGTH + 4)) {
+            log.warn("Image record with wrong checksum at {} in {}", offset, folder);
+            return null;
+        }
+        return data;
+    }
+
+    boolean contains(@NonNull byte[] key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Appends the image to the pack, an existing key is not written again
+     */
+    synchronized void put(@NonNull byte[] key, @NonNull byte[] data) throws IOException {
+        if (key.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Key must have %d bytes".formatted(KEY_LENGTH));
+        }
+        if (contains(key)) {
+            return;
+        }
+        final State current = state;
+        final long offset = current.index().getLong(16);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + data.length)
+                .putInt(RECORD_MAGIC)
+                .put(key)
+                .putInt(data.length)
+                .putInt((int) crc(data))
+                .put(data)
+                .flip();
+        writeFully(current.pack(), record, offset);
+        insert(key, offset, data.length);
+        state.index().putLong(16, offset + RECORD_HEADER + data.length);
+    }
+
+    private void insert(byte[] key, long offset, int length) throws IOException {
+        State current = state;
+        if (current.index().getInt(28) + 1 > current.capacity() * MAX_LOAD) {
+            resize(current.capacity() * 2);
+            current = state;
+        }
+        final int previousLength = insertInto(current.index(), current.capacity(), keyPrefix(key), offset, length, toMinute(System.currentTimeMillis()));
+        if (previousLength == NEW_SLOT) {
+            current.index().putInt(28, current.index().getInt(28) + 1);
+            liveBytes += RECORD_HEADER + length;
+        } else if (previousLength == REMOVED) {
+            removedSlots--;
+            liveBytes += RECORD_HEADER + length;
+        } else {
+            liveBytes += length - previousLength;
+        }
+    }
+
+    /**
+     * The prefix is written last, so a reader never sees a prefix with an old offset. Returns the previous length of
+     * the slot, {@link #REMOVED} or {@link #NEW_SLOT} if the slot was empty.
+     */
+    private static int insertInto(MappedByteBuffer index, int capacity, long prefix, long offset, int length, int lastUsedMinute) {
+        final int mask = capacity - 1;
+        int slot = (int) (prefix ^ (prefix >>> 32)) & mask;
+        while (true) {
+            final int position = slotPosition(slot);
+            final long slotPrefix = index.getLong(position);
+            if (slotPrefix == EMPTY || slotPrefix == prefix) {
+                //a key with the same prefix but another hash is practically impossible, it replaces the old entry
+                final int previousLength = slotPrefix == EMPTY ? NEW_SLOT : index.getInt(position + 16);
+                index.putLong(position + 8, offset);
+                index.putInt(position + 16, length);
+                index.putInt(position + 20, lastUsedMinute);
+                index.putLong(position, prefix);
+                return previousLength;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Appends a remove record to the pack and marks the slot of the image as removed. The record bytes stay in the pack
+     * until the next {@link #compact()}.
+     */
+    synchronized void remove(@NonNull byte[] key) throws IOException {
+        if (!contains(key)) {
+            return;
+        }
+        final State current = state;
+        final long offset = current.index().getLong(16);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER)
+                .putInt(REMOVE_MAGIC)
+                .put(key)
+                .putInt(0)
+                .putInt(0)
+                .flip();
+        writeFully(current.pack(), record, offset);
+        markRemoved(key);
+        state.index().putLong(16, offset + RECORD_HEADER);
+    }
+
+    private void markRemoved(byte[] key) throws IOException {
+        final State current = state;
+        final long prefix = keyPrefix(key);
+        final int mask = current.capacity() - 1;
+        int slot = (int) (prefix ^ (prefix >>> 32)) & mask;
+        for (int i = 0; i < current.capacity(); i++) {
+            final int position = slotPosition(slot);
+            final long slotPrefix = current.index().getLong(position);
+            if (slotPrefix == EMPTY) {
+                return;
+            }
+            final int length = current.index().getInt(position + 16);
+            if (slotPrefix == prefix && length != REMOVED
+                    && readRecord(current.pack(), current.index().getLong(position + 8), length, key) != null) {
+                current.index().putInt(position + 16, REMOVED);
+                removedSlots++;
+                liveBytes -= RECORD_HEADER + length;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Sets the last use in the slot of the image, with minute precision. The slot is found by the key prefix like in
+     * {@link #insertInto}, without reading the record.
+     */
+    synchronized void setLastUsed(@NonNull byte[] key, long epochMillis) {
+        final State current = state;
+        final long prefix = keyPrefix(key);
+        final int mask = current.capacity() - 1;
+        int slot = (int) (prefix ^ (prefix >>> 32)) & mask;
+        for (int i = 0; i < current.capacity(); i++) {
+            final int position = slotPosition(slot);
+            final long slotPrefix = current.index().getLong(position);
+            if (slotPrefix == EMPTY) {
+                return;
+            }
+            if (slotPrefix == prefix && current.index().getInt(position + 16) != REMOVED) {
+                current.index().putInt(position + 20, toMinute(epochMillis));
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Creates a larger index next to the current one and replaces it with an atomic rename
+     */
+    private void resize(int newCapacity) throws IOException {
+        final State current = state;
+        final Path tempFile = folder.resolve(INDEX_FILE + ".resize");
+        final FileChannel newIndexChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer newIndex = createIndex(newIndexChannel, current.index().getLong(8), newCapacity);
+        int count = 0;
+        for (int slot = 0; slot < current.capacity(); slot++) {
+            final int position = slotPosition(slot);
+            final long prefix = current.index().getLong(position);
+            final int length = current.index().getInt(position + 16);
+            if (prefix != EMPTY && length != REMOVED
+                    && insertInto(newIndex, newCapacity, prefix, current.index().getLong(position + 8), length, current.index().getInt(position + 20)) == NEW_SLOT) {
+                count++;
+            }
+        }
+        newIndex.putInt(28, count);
+        newIndex.putLong(16, current.index().getLong(16));
+        newIndex.force();
+        Files.move(tempFile, folder.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        state = new State(current.pack(), newIndexChannel, newIndex, newCapacity);
+        removedSlots = 0;
+        current.indexChannel().close();
+        log.debug("Resized image index of {} to {}", folder, newCapacity);
+    }
+
+    /**
+     * Number of images in the index
+     */
+    int getEntries() {
+        return state.index().getInt(28) - removedSlots;
+    }
+
+    /**
+     * Bytes of the pack that are not used by an indexed image
+     */
+    long getDeadBytes() {
+        return getPackBytes() - liveBytes;
+    }
+
+    private void countSlots() {
+        final State current = state;
+        long bytes = PACK_HEADER;
+        int removed = 0;
+        for (int slot = 0; slot < current.capacity(); slot++) {
+            final int position = slotPosition(slot);
+            if (current.index().getLong(position) != EMPTY) {
+                final int length = current.index().getInt(position + 16);
+                if (length == REMOVED) {
+                    removed++;
+                } else {
+                    bytes += RECORD_HEADER + length;
+                }
+            }
+        }
+        liveBytes = bytes;
+        removedSlots = removed;
+    }
+
+    /**
+     * Key, length and last use of the images, in the order they were written
+     */
+    List<StoredRecord> getRecords() throws IOException {
+        final State current = state;
+        final List<StoredRecord> records = new ArrayList<>();
+        for (int slot = 0; slot < current.capacity(); slot++) {
+            final int position = slotPosition(slot);
+            final int length = current.index().getInt(position + 16);
+            if (current.index().getLong(position) != EMPTY && length != REMOVED) {
+                final long offset = current.index().getLong(position + 8);
+                final byte[] key = new byte[KEY_LENGTH];
+                readFully(current.pack(), offset + 4, KEY_LENGTH).get(key);
+                records.add(new StoredRecord(key, offset, length, current.index().getInt(position + 20)));
+            }
+        }
+        records.sort(Comparator.comparingLong(StoredRecord::offset));
+        return records;
+    }
+
+    long getPackBytes() {
+        return state.index().getLong(16);
+    }
+
+    /**
+     * Rewrites the pack with only the indexed images, in the order of the old pack. The new pack and index are created
+     * next to the old ones and renamed afterward. The new pack has a new id, so after a crash between the renames the
+     * index is rebuilt.
+     */
+    synchronized void compact() throws IOException {
+        final State current = state;
+        final Path compactPackFile = folder.resolve(PACK_FILE + COMPACT_SUFFIX);
+        final Path compactIndexFile = folder.resolve(INDEX_FILE + COMPACT_SUFFIX);
+        final FileChannel newPack = FileChannel.open(compactPackFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long newPackId = readOrCreatePackHeader(newPack);
+        final FileChannel newIndexChannel = FileChannel.open(compactIndexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final MappedByteBuffer newIndex = createIndex(newIndexChannel, newPackId, current.capacity());
+        long position = PACK_HEADER;
+        int count = 0;
+        for (StoredRecord storedRecord : getRecords()) {
+            final ByteBuffer record = readFully(current.pack(), storedRecord.offset(), RECORD_HEADER + storedRecord.length());
+            writeFully(newPack, record, position);
+            if (insertInto(newIndex, current.capacity(), keyPrefix(storedRecord.key()), position, storedRecord.length(), storedRecord.lastUsedMinute()) == NEW_SLOT) {
+                count++;
+            }
+            position += RECORD_HEADER + storedRecord.length();
+        }
+        newIndex.putInt(28, count);
+        newIndex.putLong(16, position);
+        newPack.force(true);
+        newIndex.force();
+        final long oldBytes = current.index().getLong(16);
+        Files.move(compactPackFile, folder.resolve(PACK_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactIndexFile, folder.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        state = new State(newPack, newIndexChannel, newIndex, current.capacity());
+        liveBytes = position;
+        removedSlots = 0;
+        current.pack().close();
+        current.indexChannel().close();
+        log.info("Compacted image pack {} from {} to {} bytes", folder, oldBytes, position);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        final State current = state;
+        current.index().force();
+        current.pack().close();
+        current.indexChannel().close();
+    }
+
+    private record State(FileChannel pack, FileChannel indexChannel, MappedByteBuffer index, int capacity) {
+    }
+
+    record StoredRecord(byte[] key, long offset, int length, int lastUsedMinute) {
+
+        /**
+         * Epoch milliseconds of the start of the last use minute, 0 if unknown
+         */
+        long lastUsed() {
+            return lastUsedMinute * MILLIS_PER_MINUTE;
+        }
+    }
+}
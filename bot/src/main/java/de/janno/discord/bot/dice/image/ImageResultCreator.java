@@ -1,5 +1,7 @@
 package de.janno.discord.bot.dice.image;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.cache.CacheBuilder;
@@ -11,6 +13,9 @@ import de.janno.discord.bot.BotMetrics;
 import de.janno.evaluator.dice.RandomElement;
 import de.janno.evaluator.dice.RollElement;
 import de.janno.evaluator.dice.RollResult;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,24 +25,42 @@ import java.awt.image.BufferedImage;
 import java.io.*;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
 
 @Slf4j
 public class ImageResultCreator {
 
     private static final String CACHE_FOLDER = "imageCache";
-    private static final String CACHE_INDEX_FILE = "imageCacheName.csv";
     private final BigInteger MAX_ROLL_COMBINATION_TO_CACHE;
+    private final ImageStore imageStore;
+    private final ImageCacheEvictor imageCacheEvictor;
+    /**
+     * The only thread that writes into the image store
+     */
+    private final ThreadPoolExecutor fileWriter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Config.getInt("imageCache.writeQueueSize", 1000)),
+            Thread.ofPlatform().name("imageFileWriter").daemon().factory());
+    /**
+     * Time after that the recorded uses are written into the store
+     */
+    private final AtomicLong nextUsePersist = new AtomicLong();
+    /**
+     * The png bytes of the most used images, keyed by the folder and hash name. The arrays are shared by all answers
+     * and must not be changed.
+     */
+    private final Cache<String, byte[]> memoryCache = Caffeine.newBuilder()
+            .maximumWeight(Config.getLong("imageCache.memory.maxBytes", 64L * 1024 * 1024))
+            .weigher((String _, byte[] bytes) -> bytes.length)
+            .build();
     private final LoadingCache<Integer, BufferedImage> separatorImage = CacheBuilder.newBuilder()
             .maximumSize(10)
             .build(new CacheLoader<>() {
@@ -61,38 +84,32 @@ public class ImageResultCreator {
 
     @VisibleForTesting
     public ImageResultCreator(int maxRollCombinationToCache) {
-        createCacheIndexFileIfMissing();
         MAX_ROLL_COMBINATION_TO_CACHE = BigInteger.valueOf(maxRollCombinationToCache);
-        Arrays.stream(DiceImageStyle.values())
+        final List<String> folders = Arrays.stream(DiceImageStyle.values())
                 .flatMap(s -> s.getSupportedColors().stream()
                         .map(c -> DiceImageStyle.combineStyleAndColorName(s, c)))
-                .forEach(ri -> {
-                    createFolderIfMissing(ri);
-                    try (Stream<Path> files = Files.list(Paths.get("%s/%s/".formatted(CACHE_FOLDER, ri)))) {
-                        log.info("Cache files for {}: {}", ri, files.count());
-                    } catch (IOException e) {
-                        log.error(e.getMessage());
-                    }
-                });
-    }
-
-    private void createFolderIfMissing(String folderName) {
-        try {
-            Files.createDirectories(Paths.get("%s/%s/".formatted(CACHE_FOLDER, folderName)));
-            File cacheIndex = new File("%s/%s/%s".formatted(CACHE_FOLDER, folderName, CACHE_INDEX_FILE));
-            if (!cacheIndex.exists()) {
-                cacheIndex.createNewFile();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+                .toList();
+        imageStore = createImageStore(Config.get("imageCache.store", "file"), folders);
+        imageCacheEvictor = new ImageCacheEvictor(imageStore, folders,
+                Config.getLong("imageCache.disk.maxBytes", 2L * 1024 * 1024 * 1024),
+                Config.getLong("imageCache.disk.maxBytesPerFolder", 256L * 1024 * 1024));
+        //migrating and loading the stored images is slow, and an existing cache can be already over the budget
+        fileWriter.execute(() -> {
+            imageStore.migrate();
+            imageCacheEvictor.load();
+            imageCacheEvictor.evictIfOverBudget();
+        });
+        Gauge.builder("imageCache.write", () -> fileWriter.getQueue().size()).tags(Tags.of("stats", "queue")).register(globalRegistry);
+        Gauge.builder("imageCache.memory", memoryCache::estimatedSize).tags(Tags.of("stats", "entries")).register(globalRegistry);
+        Gauge.builder("imageCache.memory", () -> memoryCache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L)).tags(Tags.of("stats", "bytes")).register(globalRegistry);
     }
 
-    private void createCacheIndexFileIfMissing() {
-        Arrays.stream(DiceImageStyle.values())
-                .flatMap(s -> s.getSupportedColors().stream()
-                        .map(c -> DiceImageStyle.combineStyleAndColorName(s, c)))
-                .forEach(this::createFolderIfMissing);
+    private static ImageStore createImageStore(String store, List<String> folders) {
+        return switch (store) {
+            case "file" -> new FileImageStore(Path.of(CACHE_FOLDER), folders);
+            case "pack" -> new PackImageStore(Path.of(CACHE_FOLDER), folders);
+            default -> throw new IllegalArgumentException("Unknown image cache store: " + store);
+        };
     }
 
     @VisibleForTesting
@@ -135,28 +152,39 @@ public class ImageResultCreator {
                 .hashString(name, StandardCharsets.UTF_8)
                 .toString();
 
-        String filePath = "%s/%s/%s.png".formatted(CACHE_FOLDER, diceStyleAndColor.toString(), hashName);
-        File imageFile = new File(filePath);
-
-        if (!imageFile.exists()) {
-            Supplier<? extends InputStream> result = createNewFileForRoll(rollResult, imageFile, name, diceStyleAndColor);
+        final String folder = diceStyleAndColor.toString();
+        final String memoryCacheKey = "%s/%s".formatted(folder, hashName);
+        final byte[] memoryCachedBytes = memoryCache.getIfPresent(memoryCacheKey);
+        if (memoryCachedBytes != null) {
+            recordUse(folder, hashName);
+            BotMetrics.incrementImageCacheTierMetricCounter(BotMetrics.ImageCacheTier.MEMORY, BotMetrics.CacheTag.CACHE_HIT);
+            BotMetrics.incrementImageResultMetricCounter(BotMetrics.CacheTag.CACHE_HIT);
+            return () -> new ByteArrayInputStream(memoryCachedBytes);
+        }
+        BotMetrics.incrementImageCacheTierMetricCounter(BotMetrics.ImageCacheTier.MEMORY, BotMetrics.CacheTag.CACHE_MISS);
+        final byte[] storedBytes = imageStore.get(folder, hashName);
+        if (storedBytes == null) {
+            BotMetrics.incrementImageCacheTierMetricCounter(BotMetrics.ImageCacheTier.DISK, BotMetrics.CacheTag.CACHE_MISS);
+            Supplier<? extends InputStream> result = createNewFileForRoll(rollResult, memoryCacheKey, hashName, name, diceStyleAndColor);
             if (result != null) {
                 BotMetrics.incrementImageResultMetricCounter(BotMetrics.CacheTag.CACHE_MISS);
             }
             return result;
-        } else {
-            log.trace("Use cached file %s for %s".formatted(filePath, name));
-            BotMetrics.incrementImageResultMetricCounter(BotMetrics.CacheTag.CACHE_HIT);
-            try {
-                byte[] imageBytes = com.google.common.io.Files.toByteArray(imageFile);
-                return () -> new ByteArrayInputStream(imageBytes);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
         }
+        log.trace("Use cached image {}/{} for {}", folder, hashName, name);
+        BotMetrics.incrementImageCacheTierMetricCounter(BotMetrics.ImageCacheTier.DISK, BotMetrics.CacheTag.CACHE_HIT);
+        BotMetrics.incrementImageResultMetricCounter(BotMetrics.CacheTag.CACHE_HIT);
+        recordUse(folder, hashName);
+        memoryCache.put(memoryCacheKey, storedBytes);
+        return () -> new ByteArrayInputStream(storedBytes);
+    }
+
+    @VisibleForTesting
+    long getMemoryCacheSize() {
+        return memoryCache.estimatedSize();
     }
 
-    private Supplier<? extends InputStream> createNewFileForRoll(RollResult rollResult, File file, String name, DiceStyleAndColor diceStyleAndColor) {
+    private Supplier<? extends InputStream> createNewFileForRoll(RollResult rollResult, String memoryCacheKey, String hashName, String name, DiceStyleAndColor diceStyleAndColor) {
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         final List<List<BufferedImage>> images = rollResult.getGroupedRandomElements().stream()
@@ -210,7 +238,6 @@ public class ImageResultCreator {
         }
 
         g.dispose();
-        final String indexPath = "%s/%s/%s".formatted(CACHE_FOLDER, diceStyleAndColor.toString(), CACHE_INDEX_FILE);
         BigInteger combinations = rollResult.getGroupedRandomElements()
                 .stream().flatMap(Collection::stream)
                 .map(r -> {
@@ -227,35 +254,82 @@ public class ImageResultCreator {
                 .reduce(BigInteger.ONE, BigInteger::multiply);
 
         //don't cache images that unlikely to ever get generated again
-        if (MAX_ROLL_COMBINATION_TO_CACHE.compareTo(combinations) < 0) {
+        final boolean cached = MAX_ROLL_COMBINATION_TO_CACHE.compareTo(combinations) >= 0;
+        //encoded only once, the same bytes are used for the answer, the memory cache and the file
+        final byte[] imageBytes = encodePng(combined);
+        log.trace("Created image {} in {}ms", name, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        BotMetrics.imageCreationTimer(stopwatch.elapsed());
+        if (!cached) {
             BotMetrics.incrementImageResultMetricCounter(BotMetrics.CacheTag.CACHE_SKIP);
             log.trace("no cache because roll has {} combinations", combinations);
         } else {
-            writeFile(combined, file, Path.of(indexPath), name);
+            memoryCache.put(memoryCacheKey, imageBytes);
+            writeFileAsync(imageBytes, diceStyleAndColor.toString(), hashName, name);
         }
-        return () -> {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try {
-                ImageIO.write(combined, "png", baos);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            log.trace("Created image {} in {}ms", name, stopwatch.elapsed(TimeUnit.MILLISECONDS));
-            BotMetrics.imageCreationTimer(stopwatch.elapsed());
-            return new ByteArrayInputStream(baos.toByteArray());
-        };
+        return () -> new ByteArrayInputStream(imageBytes);
     }
 
-    private synchronized void writeFile(BufferedImage combined, File outputFile, Path indexFile, String name) {
+    private static byte[] encodePng(BufferedImage image) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
         try {
-            createCacheIndexFileIfMissing();
-            ImageIO.write(combined, "PNG", outputFile);
-            Files.writeString(
-                    indexFile,
-                    "%s;%s\n".formatted(name, outputFile.getName()),
-                    StandardOpenOption.APPEND);
+            ImageIO.write(image, "png", baos);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        return baos.toByteArray();
+    }
+
+    /**
+     * The uses are written by the file writer thread at most once per interval. If the queue is full they are written
+     * with the next batch.
+     */
+    private void recordUse(String folder, String hashName) {
+        imageCacheEvictor.recordUse(folder, hashName);
+        final long now = System.currentTimeMillis();
+        final long next = nextUsePersist.get();
+        if (now >= next && nextUsePersist.compareAndSet(next, now + Config.getLong("imageCache.disk.persistUseIntervalMs", 60_000))) {
+            try {
+                fileWriter.execute(imageCacheEvictor::persistUses);
+            } catch (RejectedExecutionException e) {
+                log.warn("image file write queue is full, skip writing the image uses");
+            }
+        }
+    }
+
+    /**
+     * The image is stored by the single file writer thread, so the store needs no lock. If the queue is full the image
+     * is not stored and will be created again on the next roll.
+     */
+    private void writeFileAsync(byte[] imageBytes, String folder, String hashName, String name) {
+        try {
+            fileWriter.execute(() -> writeFile(imageBytes, folder, hashName, name));
+        } catch (RejectedExecutionException e) {
+            log.warn("image file write queue is full, skip {}/{}", folder, hashName);
+        }
+    }
+
+    private void writeFile(byte[] imageBytes, String folder, String hashName, String name) {
+        try {
+            imageStore.put(folder, hashName, name, imageBytes);
+            imageCacheEvictor.add(folder, hashName, imageBytes.length);
+            imageCacheEvictor.evictIfOverBudget();
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not store image {}/{}", folder, hashName, e);
+        }
+    }
+
+    /**
+     * Waits until all image files that are already in the queue are written
+     */
+    @VisibleForTesting
+    void awaitFileWrites() {
+        try {
+            fileWriter.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
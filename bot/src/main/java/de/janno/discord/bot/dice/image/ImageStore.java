@@ -0,0 +1,63 @@
+package de.janno.discord.bot.dice.image;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent storage of the result images. Each style and color has its own folder and the images are identified by
+ * the sha256 hex string of their cache name.
+ */
+public interface ImageStore {
+
+    /**
+     * Moves the images of an older layout into the store. Is called once by the thread that stores the images, before
+     * any other change.
+     */
+    default void migrate() {
+    }
+
+    /**
+     * The png bytes or null if the image is not stored
+     */
+    byte[] get(@NonNull String folder, @NonNull String hashName);
+
+    /**
+     * Stores the image, must only be called by one thread at a time
+     *
+     * @param name the readable cache name of the image
+     */
+    void put(@NonNull String folder, @NonNull String hashName, @NonNull String name, @NonNull byte[] imageBytes) throws IOException;
+
+    /**
+     * Removes the images, must only be called by the thread that stores the images
+     */
+    void remove(@NonNull String folder, @NonNull Collection<String> hashNames) throws IOException;
+
+    /**
+     * Persists the last use of the images, images that are not stored are ignored. Must only be called by the thread
+     * that stores the images.
+     *
+     * @param lastUsed epoch milliseconds of the last use by hash name
+     */
+    void setLastUsed(@NonNull String folder, @NonNull Map<String, Long> lastUsed) throws IOException;
+
+    /**
+     * Number of stored images in the folder
+     */
+    long getEntries(@NonNull String folder);
+
+    /**
+     * The stored images of the folder, the oldest first
+     */
+    List<StoredImage> list(@NonNull String folder) throws IOException;
+
+    /**
+     * @param lastUsed epoch milliseconds of the last known use, 0 if unknown
+     */
+    record StoredImage(String hashName, long bytes, long lastUsed) {
+    }
+}
@@ -0,0 +1,180 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Stores the images of each folder in one {@link ImagePack}, instead of a file per image. Images of the
+ * {@link FileImageStore} layout in the folder are moved into the pack by {@link #migrate()}, until then they are read
+ * from their files.
+ */
+@Slf4j
+public class PackImageStore implements ImageStore {
+
+    private static final Pattern IMAGE_FILE = Pattern.compile("[0-9a-f]{64}\\.png");
+    /**
+     * Compact a pack if at least this part of it is not used by indexed images
+     */
+    private static final double COMPACT_DEAD_RATIO = 0.5;
+    private static final long COMPACT_MIN_DEAD_BYTES = 1024 * 1024;
+    private final Path root;
+    private final List<String> folders;
+    private final Map<String, ImagePack> packs = new ConcurrentHashMap<>();
+    /**
+     * Folders without image files of the file store layout
+     */
+    private final Set<String> migratedFolders = ConcurrentHashMap.newKeySet();
+
+    public PackImageStore(@NonNull Path root, @NonNull Collection<String> folders) {
+        this.root = root;
+        this.folders = List.copyOf(folders);
+    }
+
+    private ImagePack getPack(String folder) {
+        return packs.computeIfAbsent(folder, f -> {
+            try {
+                return ImagePack.open(root.resolve(f));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void migrate() {
+        folders.forEach(folder -> {
+            try {
+                ImagePack pack = getPack(folder);
+                migrateImageFiles(folder, pack);
+                migratedFolders.add(folder);
+                log.info("Cache images in pack for {}: {}", folder, pack.getEntries());
+            } catch (RuntimeException e) {
+                log.error("Could not migrate the images of {}", folder, e);
+            }
+        });
+    }
+
+    /**
+     * Moves the png files of the file store into the pack. Each file is deleted after it is in the pack, so an
+     * interrupted migration continues on the next start.
+     */
+    @VisibleForTesting
+    void migrateImageFiles(String folder, ImagePack pack) {
+        final List<Path> imageFiles;
+        try (Stream<Path> files = Files.list(root.resolve(folder))) {
+            imageFiles = files.filter(f -> IMAGE_FILE.matcher(f.getFileName().toString()).matches()).toList();
+        } catch (IOException e) {
+            log.error("Could not list image files in {}", folder, e);
+            return;
+        }
+        if (imageFiles.isEmpty()) {
+            return;
+        }
+        int migrated = 0;
+        for (Path imageFile : imageFiles) {
+            final String fileName = imageFile.getFileName().toString();
+            try {
+                final byte[] key = HashCode.fromString(fileName.substring(0, fileName.length() - 4)).asBytes();
+                pack.put(key, Files.readAllBytes(imageFile));
+                pack.setLastUsed(key, Files.getLastModifiedTime(imageFile).toMillis());
+                Files.delete(imageFile);
+                migrated++;
+            } catch (IOException e) {
+                log.error("Could not migrate image file {}", imageFile, e);
+            }
+        }
+        if (migrated == imageFiles.size()) {
+            try {
+                Files.deleteIfExists(root.resolve(folder).resolve(FileImageStore.CACHE_INDEX_FILE));
+            } catch (IOException e) {
+                log.warn("Could not delete {} in {}", FileImageStore.CACHE_INDEX_FILE, folder, e);
+            }
+        }
+        log.info("Migrated {} image files into the pack of {}", migrated, folder);
+    }
+
+    @Override
+    public byte[] get(@NonNull String folder, @NonNull String hashName) {
+        final byte[] image = getPack(folder).get(HashCode.fromString(hashName).asBytes());
+        if (image == null && !migratedFolders.contains(folder)) {
+            return getImageFile(folder, hashName);
+        }
+        return image;
+    }
+
+    /**
+     * The png file of the file store layout, null if it doesn't exist or was already moved into the pack
+     */
+    private byte[] getImageFile(String folder, String hashName) {
+        final Path imageFile = root.resolve(folder).resolve(hashName + ".png");
+        try {
+            return Files.readAllBytes(imageFile);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read image file {}", imageFile, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(@NonNull String folder, @NonNull String hashName, @NonNull String name, @NonNull byte[] imageBytes) throws IOException {
+        final ImagePack pack = getPack(folder);
+        pack.put(HashCode.fromString(hashName).asBytes(), imageBytes);
+        compactIfNeeded(pack);
+    }
+
+    @Override
+    public void remove(@NonNull String folder, @NonNull Collection<String> hashNames) throws IOException {
+        final ImagePack pack = getPack(folder);
+        for (String hashName : hashNames) {
+            pack.remove(HashCode.fromString(hashName).asBytes());
+        }
+        compactIfNeeded(pack);
+    }
+
+    private void compactIfNeeded(ImagePack pack) throws IOException {
+        final long deadBytes = pack.getDeadBytes();
+        if (deadBytes > COMPACT_MIN_DEAD_BYTES && deadBytes > pack.getPackBytes() * COMPACT_DEAD_RATIO) {
+            pack.compact();
+        }
+    }
+
+    @Override
+    public void setLastUsed(@NonNull String folder, @NonNull Map<String, Long> lastUsed) {
+        final ImagePack pack = getPack(folder);
+        lastUsed.forEach((hashName, time) -> pack.setLastUsed(HashCode.fromString(hashName).asBytes(), time));
+    }
+
+    /**
+     * The images with the same last use minute are in the order they were written
+     */
+    @Override
+    public List<StoredImage> list(@NonNull String folder) throws IOException {
+        return getPack(folder).getRecords().stream()
+                .map(r -> new StoredImage(HashCode.fromBytes(r.key()).toString(), r.length(), r.lastUsed()))
+                .sorted(Comparator.comparingLong(StoredImage::lastUsed))
+                .toList();
+    }
+
+    @Override
+    public long getEntries(@NonNull String folder) {
+        return getPack(folder).getEntries();
+    }
+}
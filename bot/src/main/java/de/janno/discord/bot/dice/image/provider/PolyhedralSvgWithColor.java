@@ -1,9 +1,17 @@
 package de.janno.discord.bot.dice.image.provider;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.CharSource;
 import com.google.common.io.Resources;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.fellbaum.jemoji.Emoji;
@@ -11,23 +19,28 @@ import net.fellbaum.jemoji.EmojiManager;
 import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.apache.batik.transcoder.image.ImageTranscoder;
 import org.apache.commons.io.IOUtils;
 
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Draws the dice from svg templates with the color and value. Batik is slow, so the rendered faces are cached and
+ * shared by all result images, they must not be changed. The faces of the numeric values can be rendered on start.
+ */
 @Slf4j
 public class PolyhedralSvgWithColor implements ImageProvider {
 
@@ -65,6 +78,7 @@ public class PolyhedralSvgWithColor implements ImageProvider {
             .put("indigo", new Color(75, 0, 130))
             .build();
     private static final float IMAGE_SIZE = 100;
+    private final LoadingCache<Face, BufferedImage> faceCache;
 
     public PolyhedralSvgWithColor() {
         try {
@@ -75,7 +89,44 @@ public class PolyhedralSvgWithColor implements ImageProvider {
         } catch (FontFormatException | IOException e) {
             throw new RuntimeException(e);
         }
+        faceCache = CacheBuilder.newBuilder()
+                .maximumSize(Config.getLong("imageCache.faces.maxSize", 1_000))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public @NonNull BufferedImage load(@NonNull Face face) {
+                        return getImageAndSetNumberAndColor(face.sides(), face.value(), face.color());
+                    }
+                });
+        Gauge.builder("imageCache.faces", faceCache::size).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("imageCache.faces", () -> faceCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("imageCache.faces", () -> faceCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        if (Config.getBool("imageCache.faces.preRender", false)) {
+            Thread.ofVirtual().name("polyhedralSvgPreRender").start(this::preRender);
+        }
+    }
+
+    /**
+     * The numeric faces of all dice and colors
+     */
+    @VisibleForTesting
+    static List<Face> getStandardFaces() {
+        return COLOR_MAP.keySet().stream()
+                .flatMap(color -> Stream.concat(
+                        DICE_IMAGE_MAP.keySet().stream()
+                                .filter(sides -> sides != 100)
+                                .flatMap(sides -> IntStream.rangeClosed(sides == 10 ? 0 : 1, sides)
+                                        .mapToObj(value -> new Face(sides, String.valueOf(value), color))),
+                        IntStream.range(0, 10)
+                                .mapToObj(tens -> new Face(100, tens == 0 ? "00" : String.valueOf(tens * 10), color))))
+                .toList();
+    }
 
+    private void preRender() {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        final List<Face> faces = getStandardFaces();
+        faces.forEach(faceCache::getUnchecked);
+        log.info("Pre-rendered {} polyhedral svg faces in {}ms", faces.size(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
     }
 
     private static boolean isExactlyOneEmoji(String in) {
@@ -102,15 +153,11 @@ public class PolyhedralSvgWithColor implements ImageProvider {
         final BufferedImage image;
 
         try (Reader reader = CharSource.wrap(svgString).openStream()) {
-            final TranscoderInput transcoderInput = new TranscoderInput(reader);
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                final TranscoderOutput output = new TranscoderOutput(outputStream);
-                final PNGTranscoder pngTranscoder = new PNGTranscoder();
-                pngTranscoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, IMAGE_SIZE);
-                pngTranscoder.addTranscodingHint(PNGTranscoder.KEY_HEIGHT, IMAGE_SIZE);
-                pngTranscoder.transcode(transcoderInput, output);
-                image = ImageIO.read(new ByteArrayInputStream(outputStream.toByteArray()));
-            }
+            final BufferedImageTranscoder transcoder = new BufferedImageTranscoder();
+            transcoder.addTranscodingHint(ImageTranscoder.KEY_WIDTH, IMAGE_SIZE);
+            transcoder.addTranscodingHint(ImageTranscoder.KEY_HEIGHT, IMAGE_SIZE);
+            transcoder.transcode(new TranscoderInput(reader), null);
+            image = transcoder.getImage();
         } catch (TranscoderException | IOException e) {
             throw new RuntimeException(e);
         }
@@ -154,12 +201,12 @@ public class PolyhedralSvgWithColor implements ImageProvider {
                 tensString = String.valueOf(tens);
             }
             return List.of(
-                    getImageAndSetNumberAndColor(100, tensString, validatedColor),
-                    getImageAndSetNumberAndColor(10, String.valueOf(ones), validatedColor)
+                    faceCache.getUnchecked(new Face(100, tensString, validatedColor)),
+                    faceCache.getUnchecked(new Face(10, String.valueOf(ones), validatedColor))
             );
         }
 
-        return List.of(getImageAndSetNumberAndColor(totalDieSides, String.valueOf(shownDieSide), validatedColor));
+        return List.of(faceCache.getUnchecked(new Face(totalDieSides, String.valueOf(shownDieSide), validatedColor)));
     }
 
     @Override
@@ -181,7 +228,7 @@ public class PolyhedralSvgWithColor implements ImageProvider {
                 validatedColor = color;
             }
 
-            return List.of(getImageAndSetNumberAndColor(totalDieSides, diceValue, validatedColor));
+            return List.of(faceCache.getUnchecked(new Face(totalDieSides, diceValue, validatedColor)));
         }
 
         return List.of();
@@ -196,4 +243,35 @@ public class PolyhedralSvgWithColor implements ImageProvider {
     public @NonNull List<String> getSupportedColors() {
         return ImmutableList.copyOf(COLOR_MAP.keySet());
     }
+
+    @VisibleForTesting
+    long getFaceCacheSize() {
+        return faceCache.size();
+    }
+
+    @VisibleForTesting
+    record Face(int sides, String value, String color) {
+    }
+
+    /**
+     * Keeps the rendered image instead of encoding it. The image is premultiplied like the result image, so the face
+     * is copied without a conversion.
+     */
+    private static class BufferedImageTranscoder extends ImageTranscoder {
+        private BufferedImage image;
+
+        @Override
+        public BufferedImage createImage(int width, int height) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        @Override
+        public void writeImage(BufferedImage image, TranscoderOutput output) {
+            this.image = image;
+        }
+
+        BufferedImage getImage() {
+            return image;
+        }
+    }
 }
@@ -1,9 +1,11 @@
 package de.janno.discord.bot.persistance;
 
 import com.google.common.collect.ImmutableSet;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.avaje.config.Config;
 import io.micrometer.core.instrument.binder.db.DatabaseTableMetrics;
 import lombok.NonNull;
-import org.h2.jdbcx.JdbcConnectionPool;
 
 
 import javax.sql.DataSource;
@@ -14,22 +16,43 @@ import static io.micrometer.core.instrument.Metrics.globalRegistry;
 
 public class DatabaseConnector {
 
-    private final JdbcConnectionPool connectionPool;
+    private final HikariDataSource connectionPool;
 
     public DatabaseConnector(@NonNull String url, String user, String password) {
-        connectionPool = JdbcConnectionPool.create(url, user, password);
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl(withQueryCache(url));
+        hikariConfig.setUsername(user);
+        hikariConfig.setPassword(password);
+        hikariConfig.setMaximumPoolSize(Config.getInt("db.pool.maxSize", 10));
+        hikariConfig.setMinimumIdle(Config.getInt("db.pool.minIdle", 2));
+        hikariConfig.setConnectionTimeout(Config.getLong("db.pool.connectionTimeoutMs", 30_000));
+        hikariConfig.setIdleTimeout(Config.getLong("db.pool.idleTimeoutMs", 600_000));
+        //active, idle and pending connections and the connection acquire time as hikaricp.connections.*
+        hikariConfig.setMetricRegistry(globalRegistry);
+        connectionPool = new HikariDataSource(hikariConfig);
         new DatabaseTableMetrics(connectionPool, "h2", "MESSAGE_DATA", ImmutableSet.of()).bindTo(globalRegistry);
         new DatabaseTableMetrics(connectionPool, "h2", "MESSAGE_CONFIG", ImmutableSet.of()).bindTo(globalRegistry);
         new DatabaseTableMetrics(connectionPool, "h2", "CHANNEL_CONFIG", ImmutableSet.of()).bindTo(globalRegistry);
 
     }
 
+    /**
+     * H2 keeps the parsed statements of a session in a query cache, so a statement is only parsed once per pooled connection.
+     * The default size of 8 is too small for the number of different statements of the bot.
+     */
+    private static String withQueryCache(@NonNull String url) {
+        if (!url.startsWith("jdbc:h2:") || url.toUpperCase().contains("QUERY_CACHE_SIZE")) {
+            return url;
+        }
+        return url + ";QUERY_CACHE_SIZE=" + Config.getInt("db.queryCacheSize", 64);
+    }
+
     public Connection getConnection() throws SQLException {
         return connectionPool.getConnection();
     }
 
     public void dispose() {
-        connectionPool.dispose();
+        connectionPool.close();
     }
 
     public DataSource getDataSource(){
@@ -44,6 +44,7 @@ public class DatabaseInitiator {
             .add("8_messageData_delete.sql")
             .add("9_messageConfig_deleteIndex.sql")
             .add("10_config_delete.sql")
+            .add("11_guildMarkedDeleted.sql")
             .build();
     private final static String BACKUP_FILE_NAME = "backup.zip";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = new DateTimeFormatterBuilder()
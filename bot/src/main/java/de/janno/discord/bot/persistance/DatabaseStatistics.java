@@ -0,0 +1,86 @@
+package de.janno.discord.bot.persistance;
+
+import com.google.common.base.Stopwatch;
+import de.janno.discord.bot.BotMetrics;
+import io.micrometer.core.instrument.Gauge;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Holds the values of the database gauges, so a metric scrape reads a stored value and does not run a query. The values
+ * are recalculated periodically by their query and adjusted in between on changes that are known without a query.
+ * Distinct counts and counts of a time window can't be adjusted by a single change and are only set by the
+ * reconciliation.
+ */
+@Slf4j
+class DatabaseStatistics {
+
+    static final String CONFIG_DELETED_COUNT = "db.config.deleted.count";
+
+    private final DataSource dataSource;
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> values = new ConcurrentHashMap<>();
+
+    DatabaseStatistics(@NonNull DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    void register(@NonNull String name, @NonNull String query) {
+        queries.put(name, query);
+        AtomicLong value = values.computeIfAbsent(name, _ -> new AtomicLong());
+        Gauge.builder(name, value::get).register(globalRegistry);
+    }
+
+    /**
+     * Adjusts a value between two reconciliations, does nothing if the statistic is not registered
+     */
+    void add(@NonNull String name, long delta) {
+        AtomicLong value = values.get(name);
+        if (value != null && delta != 0) {
+            value.addAndGet(delta);
+        }
+    }
+
+    long get(@NonNull String name) {
+        AtomicLong value = values.get(name);
+        return value == null ? 0 : value.get();
+    }
+
+    void startReconciliation(long intervalMs) {
+        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+        executorService.scheduleWithFixedDelay(this::reconcile, 0, intervalMs, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(executorService::shutdownNow));
+    }
+
+    /**
+     * Recalculates all values with their query, one query after another
+     */
+    void reconcile() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        queries.forEach((name, query) -> {
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(query);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                values.get(name).set(rs.getLong(1));
+            } catch (SQLException e) {
+                log.warn("Could not reconcile statistic {}", name, e);
+            }
+        });
+        BotMetrics.databaseTimer("reconcileStatistics", stopwatch.elapsed());
+    }
+}
@@ -0,0 +1,132 @@
+package de.janno.discord.bot.persistance;
+
+import com.google.common.base.Stopwatch;
+import de.janno.discord.bot.BotMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Collects message data upserts in memory and writes them in batches. Only the latest message data of a message is kept,
+ * older pending upserts of the same message are overwritten. Reads merge the pending message data and changes of the
+ * stored message data discard the affected pending entries, so they don't need to wait for a flush.
+ */
+@Slf4j
+class MessageDataWriteBehindBuffer {
+
+    private final Map<MessageKey, MessageDataDTO> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /**
+     * True while a flush because of the threshold is queued or running
+     */
+    private final AtomicBoolean thresholdFlushScheduled = new AtomicBoolean();
+    private final Consumer<List<MessageDataDTO>> batchWriter;
+    private final int flushThreshold;
+    private final ScheduledExecutorService executorService;
+
+    MessageDataWriteBehindBuffer(@NonNull Consumer<List<MessageDataDTO>> batchWriter, long flushIntervalMs, int flushThreshold) {
+        this.batchWriter = batchWriter;
+        this.flushThreshold = flushThreshold;
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        executorService.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        Gauge.builder("db.messageDataWriteBehind", pending::size).tags(Tags.of("stats", "queue")).register(globalRegistry);
+    }
+
+    void add(@NonNull MessageDataDTO messageData) {
+        pending.put(new MessageKey(messageData.getChannelId(), messageData.getMessageId()), messageData);
+        if (pending.size() >= flushThreshold && !flushLock.isLocked() && thresholdFlushScheduled.compareAndSet(false, true)) {
+            executorService.execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    thresholdFlushScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    Optional<MessageDataDTO> get(long channelId, long messageId) {
+        return Optional.ofNullable(pending.get(new MessageKey(channelId, messageId)));
+    }
+
+    /**
+     * The pending message data that matches the filter. Must be called before the stored message data is read, because
+     * a flush removes the entries after they are written.
+     */
+    List<MessageDataDTO> getPending(@NonNull Predicate<MessageDataDTO> filter) {
+        return pending.values().stream()
+                .filter(filter)
+                .toList();
+    }
+
+    /**
+     * Removes the matching pending message data, before the stored message data is deleted or marked as deleted. Waits
+     * for a running flush, so its upserts are written before the change and can't undo it.
+     */
+    List<MessageDataDTO> discard(@NonNull Predicate<MessageDataDTO> filter) {
+        flushLock.lock();
+        try {
+            final List<MessageDataDTO> discarded = getPending(filter);
+            discarded.forEach(m -> pending.remove(new MessageKey(m.getChannelId(), m.getMessageId()), m));
+            return discarded;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes all pending message data. The entries stay readable in the buffer until they are written and are only
+     * removed if they were not replaced in the meantime. On an error the entries are kept for the next flush.
+     */
+    void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            final Map<MessageKey, MessageDataDTO> toWrite = Map.copyOf(pending);
+            batchWriter.accept(List.copyOf(toWrite.values()));
+            toWrite.forEach(pending::remove);
+            BotMetrics.databaseTimer("writeBehindFlush", stopwatch.elapsed());
+            log.trace("flushed message data: {}", toWrite.size());
+        } catch (Exception e) {
+            log.error("Error while flushing message data", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    void shutdown() {
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Write behind executor did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("Could not write {} message data on shutdown", pending.size());
+        }
+    }
+
+    private record MessageKey(long channelId, long messageId) {
+    }
+}
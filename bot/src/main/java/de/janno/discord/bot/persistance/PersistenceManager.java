@@ -39,6 +39,11 @@ public interface PersistenceManager {
 
     void saveMessageData(@NonNull MessageDataDTO messageState);
 
+    /**
+     * Replaces the message data of the channelId and messageId with the given one or inserts it if there is none.
+     */
+    void upsertMessageData(@NonNull MessageDataDTO messageState);
+
     Set<Long> getAllGuildIds();
 
     @NonNull
@@ -4,23 +4,27 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import de.janno.discord.bot.BotMetrics;
 import de.janno.discord.connector.api.ChildrenChannelCreationEvent;
 import io.micrometer.core.instrument.Gauge;
-import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.ToDoubleFunction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static io.micrometer.core.instrument.Metrics.globalRegistry;
@@ -29,25 +33,98 @@ import static io.micrometer.core.instrument.Metrics.globalRegistry;
 public class PersistenceManagerImpl implements PersistenceManager {
 
     private final static long USER_ID_NULL_PLACEHOLDER = -1L;
+    private final static List<String> PURGE_TABLES = List.of("MESSAGE_DATA", "MESSAGE_CONFIG", "CHANNEL_CONFIG");
+    private final static String UPSERT_MESSAGE_DATA_SQL = "MERGE INTO MESSAGE_DATA(CONFIG_ID, GUILD_ID, CHANNEL_ID, MESSAGE_ID, COMMAND_ID, STATE_CLASS_ID, STATE, CREATION_DATE, MARKED_DELETED) KEY(CHANNEL_ID, MESSAGE_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?, NULL)";
     private final DatabaseConnector databaseConnector;
+    /**
+     * A message config is never changed after it was saved, only deleted. Only existing configs are cached.
+     */
+    private volatile Cache<UUID, MessageConfigDTO> messageConfigCache;
+    /**
+     * Incremented on each deletion or mark of message configs, so a read that overlaps with it doesn't cache a removed config
+     */
+    private final AtomicLong messageConfigGeneration = new AtomicLong();
+    /**
+     * Caches also missing channel configs, because most channels have no channel config but it is requested on each roll
+     */
+    private volatile Cache<ChannelConfigKey, Optional<ChannelConfigDTO>> channelConfigCache;
+    /**
+     * Incremented on each change of the channel configs, so a read that overlaps with a change doesn't cache an outdated result
+     */
+    private final AtomicLong channelConfigGeneration = new AtomicLong();
+    /**
+     * Is null if the message data upserts are written directly
+     */
+    private final MessageDataWriteBehindBuffer messageDataWriteBehindBuffer;
+    /**
+     * The number of marked rows that could not be deleted in the last purge run because of db.purge.maxRowsPerRun
+     */
+    private final Map<String, AtomicLong> purgeBacklog = new ConcurrentHashMap<>();
+    /**
+     * The number of guilds of the current markDeleteAllForGuild call that are not yet marked
+     */
+    private final AtomicLong guildMarkDeleteRemaining = new AtomicLong();
+    /**
+     * The values of the database gauges, only registered if metric.db.gauge is enabled
+     */
+    private final DatabaseStatistics databaseStatistics;
 
     public PersistenceManagerImpl(@NonNull String url, String user, String password) {
         databaseConnector = new DatabaseConnector(url, user, password);
         DatabaseInitiator.initialize(databaseConnector);
 
+        messageConfigCache = createMessageConfigCache();
+        io.avaje.config.Config.onChange(_ -> {
+            messageConfigCache = createMessageConfigCache();
+            log.info("recreate message config cache");
+        }, "db.messageConfigCache.size", "db.messageConfigCache.expireAfterAccessSec");
+        Gauge.builder("db.messageConfigCache", () -> messageConfigCache.size()).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("db.messageConfigCache", () -> messageConfigCache.stats().requestCount()).tags(Tags.of("stats", "requests")).register(globalRegistry);
+        Gauge.builder("db.messageConfigCache", () -> messageConfigCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("db.messageConfigCache", () -> messageConfigCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        Gauge.builder("db.messageConfigCache", () -> messageConfigCache.stats().evictionCount()).tags(Tags.of("stats", "eviction")).register(globalRegistry);
+
+        channelConfigCache = createChannelConfigCache();
+        io.avaje.config.Config.onChange(_ -> {
+            channelConfigCache = createChannelConfigCache();
+            log.info("recreate channel config cache");
+        }, "db.channelConfigCache.size", "db.channelConfigCache.expireAfterAccessSec");
+        Gauge.builder("db.channelConfigCache", () -> channelConfigCache.size()).tags(Tags.of("stats", "size")).register(globalRegistry);
+        Gauge.builder("db.channelConfigCache", () -> channelConfigCache.stats().requestCount()).tags(Tags.of("stats", "requests")).register(globalRegistry);
+        Gauge.builder("db.channelConfigCache", () -> channelConfigCache.stats().hitCount()).tags(Tags.of("stats", "hit")).register(globalRegistry);
+        Gauge.builder("db.channelConfigCache", () -> channelConfigCache.stats().missCount()).tags(Tags.of("stats", "miss")).register(globalRegistry);
+        Gauge.builder("db.channelConfigCache", () -> channelConfigCache.stats().evictionCount()).tags(Tags.of("stats", "eviction")).register(globalRegistry);
+
+        for (String table : PURGE_TABLES) {
+            AtomicLong backlog = purgeBacklog.computeIfAbsent(table, _ -> new AtomicLong());
+            Gauge.builder("db.purge", backlog::get).tags(Tags.of("table", table, "stats", "backlog")).register(globalRegistry);
+        }
+
+        Gauge.builder("db.guildMarkDelete", guildMarkDeleteRemaining::get).tags(Tags.of("stats", "remaining")).register(globalRegistry);
+
+        databaseStatistics = new DatabaseStatistics(databaseConnector.getDataSource());
         if (io.avaje.config.Config.getBool("metric.db.gauge", false)) {
-            queryGauge("db.channel.count", "select count (distinct CHANNEL_ID) from MESSAGE_DATA;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.config.deleted.count", "select count(distinct CONFIG_ID) from MESSAGE_CONFIG where MARKED_DELETED is not null;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.channel.config.count", "select count (distinct CHANNEL_ID) from CHANNEL_CONFIG;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.guild.count", "select count (distinct GUILD_ID) from MESSAGE_DATA;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.guild-null.count", "select count (distinct CHANNEL_ID) from MESSAGE_DATA where GUILD_ID is null;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.messageDataWithConfig.count", "SELECT COUNT(*) FROM (SELECT DISTINCT CHANNEL_ID, MESSAGE_ID FROM MESSAGE_DATA WHERE CONFIG_CLASS_ID IS NOT NULL);", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.guild-30d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '43200' MINUTE;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.guild-7d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '10080' MINUTE;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.guild-1d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '1440' MINUTE;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.messageData-30d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '43200' MINUTE;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.messageData-7d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '10080' MINUTE;", databaseConnector.getDataSource(), Set.of());
-            queryGauge("db.messageData-1d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '1440' MINUTE;", databaseConnector.getDataSource(), Set.of());
+            databaseStatistics.register("db.channel.count", "select count (distinct CHANNEL_ID) from MESSAGE_DATA;");
+            databaseStatistics.register(DatabaseStatistics.CONFIG_DELETED_COUNT, "select count(distinct CONFIG_ID) from MESSAGE_CONFIG where MARKED_DELETED is not null;");
+            databaseStatistics.register("db.channel.config.count", "select count (distinct CHANNEL_ID) from CHANNEL_CONFIG;");
+            databaseStatistics.register("db.guild.count", "select count (distinct GUILD_ID) from MESSAGE_DATA;");
+            databaseStatistics.register("db.guild-null.count", "select count (distinct CHANNEL_ID) from MESSAGE_DATA where GUILD_ID is null;");
+            databaseStatistics.register("db.messageDataWithConfig.count", "SELECT COUNT(*) FROM (SELECT DISTINCT CHANNEL_ID, MESSAGE_ID FROM MESSAGE_DATA WHERE CONFIG_CLASS_ID IS NOT NULL);");
+            databaseStatistics.register("db.guild-30d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '43200' MINUTE;");
+            databaseStatistics.register("db.guild-7d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '10080' MINUTE;");
+            databaseStatistics.register("db.guild-1d.active", "select count (distinct GUILD_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '1440' MINUTE;");
+            databaseStatistics.register("db.messageData-30d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '43200' MINUTE;");
+            databaseStatistics.register("db.messageData-7d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '10080' MINUTE;");
+            databaseStatistics.register("db.messageData-1d.active", "select count (MESSAGE_ID) from MESSAGE_DATA where (CURRENT_TIMESTAMP - CREATION_DATE) <= interval '1440' MINUTE;");
+            databaseStatistics.startReconciliation(io.avaje.config.Config.getLong("metric.db.reconcileIntervalMs", 1000 * 60 * 60));
+        }
+
+        if (io.avaje.config.Config.getBool("db.messageDataWriteBehind.enabled", false)) {
+            messageDataWriteBehindBuffer = new MessageDataWriteBehindBuffer(this::upsertMessageDataBatch,
+                    io.avaje.config.Config.getLong("db.messageDataWriteBehind.flushIntervalMs", 250),
+                    io.avaje.config.Config.getInt("db.messageDataWriteBehind.flushThreshold", 500));
+        } else {
+            messageDataWriteBehindBuffer = null;
         }
 
         long messageDataDeleteIntervalMs = io.avaje.config.Config.getLong("db.deleteMarkMessageDataIntervalInMilliSec", 10_000);
@@ -66,6 +143,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
             executorService.scheduleAtFixedRate(() -> {
                         deleteOldMessageConfigThatAreMarked();
                         deleteOldChannelConfigThatAreMarked();
+                        deleteGuildMarksWithoutMarkedRows();
                     },
                     io.avaje.config.Config.getLong("db.deleteMarkedConfigStartDelayMilliSec", 0),
                     configDeleteIntervalMs,
@@ -74,6 +152,10 @@ public class PersistenceManagerImpl implements PersistenceManager {
         }
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (messageDataWriteBehindBuffer != null) {
+                log.info("flush pending message data");
+                messageDataWriteBehindBuffer.shutdown();
+            }
             log.info("start db shutdown");
             databaseConnector.dispose();
             try (Connection connection = DriverManager.getConnection(url, user, password)) {
@@ -85,22 +167,74 @@ public class PersistenceManagerImpl implements PersistenceManager {
         }));
     }
 
+    private Cache<UUID, MessageConfigDTO> createMessageConfigCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(io.avaje.config.Config.getLong("db.messageConfigCache.size", 10_000))
+                .expireAfterAccess(io.avaje.config.Config.getLong("db.messageConfigCache.expireAfterAccessSec", 60 * 60), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    private Cache<ChannelConfigKey, Optional<ChannelConfigDTO>> createChannelConfigCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(io.avaje.config.Config.getLong("db.channelConfigCache.size", 10_000))
+                .expireAfterAccess(io.avaje.config.Config.getLong("db.channelConfigCache.expireAfterAccessSec", 60 * 60), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    private void invalidateChannelConfigCache(long channelId) {
+        channelConfigGeneration.incrementAndGet();
+        channelConfigCache.asMap().keySet().removeIf(k -> k.channelId() == channelId);
+    }
+
+    private void invalidateChannelConfigCache(ChannelConfigKey key) {
+        channelConfigGeneration.incrementAndGet();
+        channelConfigCache.invalidate(key);
+    }
+
+    /**
+     * The put is reverted if the channel configs were changed since the read started, because the invalidation of the
+     * change could have been before the put
+     */
+    private void cacheChannelConfig(ChannelConfigKey key, Optional<ChannelConfigDTO> channelConfig, long generation) {
+        channelConfigCache.put(key, channelConfig);
+        if (channelConfigGeneration.get() != generation) {
+            channelConfigCache.invalidate(key);
+        }
+    }
+
+    private void invalidateMessageConfigCache(Predicate<MessageConfigDTO> shouldBeInvalidated) {
+        messageConfigGeneration.incrementAndGet();
+        messageConfigCache.asMap().values().removeIf(shouldBeInvalidated);
+    }
+
+    private void invalidateMessageConfigCache(UUID configUUID) {
+        messageConfigGeneration.incrementAndGet();
+        messageConfigCache.invalidate(configUUID);
+    }
+
+    /**
+     * The put is reverted if message configs were removed since the read started, because the invalidation of the
+     * removal could have been before the put
+     */
+    private void cacheMessageConfig(UUID configUUID, MessageConfigDTO messageConfigDTO, long generation) {
+        messageConfigCache.put(configUUID, messageConfigDTO);
+        if (messageConfigGeneration.get() != generation) {
+            messageConfigCache.invalidate(configUUID);
+        }
+    }
+
     @VisibleForTesting
     void deleteOldMessageDataThatAreMarked() {
+        //a pending upsert of a purged message writes it again unmarked, like an upsert that was written before the purge
         Stopwatch stopwatch = Stopwatch.createStarted();
         final Duration delay = Duration.ofMillis(io.avaje.config.Config.getLong("db.delayMessageDataDeletionMs", 10_000));
         LocalDateTime deleteAllBefore = LocalDateTime.now().minus(delay);
 
-        try (Connection con = databaseConnector.getConnection()) {
-            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM MESSAGE_DATA WHERE MARKED_DELETED IS NOT NULL AND MARKED_DELETED < ?")) {
-                preparedStatement.setObject(1, deleteAllBefore);
-                long deleted = preparedStatement.executeUpdate();
-                if (deleted > 0) {
-                    log.trace("deleted message_data: {}", deleted);
-                }
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        long deleted = purgeMarked("MESSAGE_DATA", deleteAllBefore);
+        if (deleted > 0) {
+            log.trace("deleted message_data: {}", deleted);
         }
         BotMetrics.databaseTimer("deleteOldMessageDataThatAreMarked", stopwatch.elapsed());
     }
@@ -111,38 +245,113 @@ public class PersistenceManagerImpl implements PersistenceManager {
         final Duration delay = Duration.ofMillis(io.avaje.config.Config.getLong("db.delayMessageConfigDeletionMs", 1000 * 60 * 60 * 24 * 7));
         LocalDateTime deleteAllBefore = LocalDateTime.now().minus(delay);
 
+        long deleted = purgeMarked("MESSAGE_CONFIG", deleteAllBefore);
+        databaseStatistics.add(DatabaseStatistics.CONFIG_DELETED_COUNT, -deleted);
+        if (deleted > 0) {
+            messageConfigGeneration.incrementAndGet();
+            messageConfigCache.invalidateAll();
+            log.info("deleted message config: {}", deleted);
+        }
+        BotMetrics.databaseTimer("deleteOldMessageConfigThatAreMarked", stopwatch.elapsed());
+    }
+
+    @VisibleForTesting
+    void deleteOldChannelConfigThatAreMarked() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        final Duration delay = Duration.ofMillis(io.avaje.config.Config.getLong("db.delayChannelConfigDeletionMs", 1000 * 60 * 60 * 24 * 7));
+        LocalDateTime deleteAllBefore = LocalDateTime.now().minus(delay);
+
+        long deleted = purgeMarked("CHANNEL_CONFIG", deleteAllBefore);
+        if (deleted > 0) {
+            channelConfigGeneration.incrementAndGet();
+            channelConfigCache.invalidateAll();
+            log.info("deleted channel config: {}", deleted);
+        }
+        BotMetrics.databaseTimer("deleteOldChannelConfigThatAreMarked", stopwatch.elapsed());
+    }
+
+    /**
+     * Removes the guilds from GUILD_MARKED_DELETED after the purge deleted their last marked rows. Only guilds with rows
+     * are marked again, so a purged guild is not marked again.
+     */
+    @VisibleForTesting
+    void deleteGuildMarksWithoutMarkedRows() {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        final String noMarkedRows = PURGE_TABLES.stream()
+                .map(table -> "NOT EXISTS (SELECT 1 FROM " + table + " T WHERE T.GUILD_ID = G.GUILD_ID AND T.MARKED_DELETED IS NOT NULL)")
+                .collect(Collectors.joining(" AND "));
         try (Connection con = databaseConnector.getConnection()) {
-            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM MESSAGE_CONFIG WHERE MARKED_DELETED IS NOT NULL AND MARKED_DELETED < ?")) {
-                preparedStatement.setObject(1, deleteAllBefore);
-                long deleted = preparedStatement.executeUpdate();
+            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM GUILD_MARKED_DELETED G WHERE " + noMarkedRows)) {
+                final int deleted = preparedStatement.executeUpdate();
                 if (deleted > 0) {
-                    log.info("deleted message config: {}", deleted);
+                    log.info("removed {} purged guilds from the marked guilds", deleted);
                 }
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        BotMetrics.databaseTimer("deleteOldMessageConfigThatAreMarked", stopwatch.elapsed());
+        BotMetrics.databaseTimer("deleteGuildMarksWithoutMarkedRows", stopwatch.elapsed());
+    }
+
+    /**
+     * Deletes the rows that are marked before the given time in chunks of db.purge.chunkSize. Each chunk is a short
+     * transaction, so the interactive queries are not blocked by a large delete. A run stops after db.purge.maxRowsPerRun
+     * rows, the remaining rows are deleted in the next run.
+     */
+    private long purgeMarked(@NonNull String table, @NonNull LocalDateTime deleteAllBefore) {
+        final int chunkSize = io.avaje.config.Config.getInt("db.purge.chunkSize", 1000);
+        final long maxRowsPerRun = io.avaje.config.Config.getLong("db.purge.maxRowsPerRun", 50_000);
+        final long pauseMs = io.avaje.config.Config.getLong("db.purge.pauseBetweenChunksMs", 100);
+        long deleted = 0;
+        boolean hasMore = true;
+        while (hasMore && deleted < maxRowsPerRun) {
+            final int limit = (int) Math.min(chunkSize, maxRowsPerRun - deleted);
+            final int chunkDeleted = deleteMarkedChunk(table, deleteAllBefore, limit);
+            deleted += chunkDeleted;
+            hasMore = chunkDeleted == limit;
+            if (hasMore && deleted < maxRowsPerRun && pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        purgeBacklog.get(table).set(hasMore ? countMarked(table, deleteAllBefore) : 0);
+        BotMetrics.purgedRowsSummary(table, deleted);
+        return deleted;
     }
 
     @VisibleForTesting
-    void deleteOldChannelConfigThatAreMarked() {
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        final Duration delay = Duration.ofMillis(io.avaje.config.Config.getLong("db.delayChannelConfigDeletionMs", 1000 * 60 * 60 * 24 * 7));
-        LocalDateTime deleteAllBefore = LocalDateTime.now().minus(delay);
+    long getPurgeBacklog(@NonNull String table) {
+        return purgeBacklog.get(table).get();
+    }
 
+    private int deleteMarkedChunk(@NonNull String table, @NonNull LocalDateTime deleteAllBefore, int limit) {
         try (Connection con = databaseConnector.getConnection()) {
-            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM CHANNEL_CONFIG WHERE MARKED_DELETED IS NOT NULL AND MARKED_DELETED < ?")) {
+            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM " + table + " WHERE MARKED_DELETED IS NOT NULL AND MARKED_DELETED < ? FETCH FIRST ? ROWS ONLY")) {
                 preparedStatement.setObject(1, deleteAllBefore);
-                long deleted = preparedStatement.executeUpdate();
-                if (deleted > 0) {
-                    log.info("deleted channel config: {}", deleted);
+                preparedStatement.setInt(2, limit);
+                return preparedStatement.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long countMarked(@NonNull String table, @NonNull LocalDateTime deleteAllBefore) {
+        try (Connection con = databaseConnector.getConnection()) {
+            try (PreparedStatement preparedStatement = con.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE MARKED_DELETED IS NOT NULL AND MARKED_DELETED < ?")) {
+                preparedStatement.setObject(1, deleteAllBefore);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
                 }
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        BotMetrics.databaseTimer("deleteOldChannelConfigThatAreMarked", stopwatch.elapsed());
     }
 
     private MessageDataDTO transformResultSet2MessageDataDTO(ResultSet resultSet) throws SQLException {
@@ -162,6 +371,11 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Optional<MessageConfigDTO> getMessageConfig(@NonNull UUID configUUID) {
+        MessageConfigDTO cachedMessageConfigDTO = messageConfigCache.getIfPresent(configUUID);
+        if (cachedMessageConfigDTO != null) {
+            return Optional.of(cachedMessageConfigDTO);
+        }
+        final long generation = messageConfigGeneration.get();
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         try (Connection con = databaseConnector.getConnection()) {
@@ -175,6 +389,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
                 if (messageConfigDTO == null) {
                     return Optional.empty();
                 }
+                cacheMessageConfig(configUUID, messageConfigDTO, generation);
                 return Optional.of(messageConfigDTO);
             }
         } catch (Exception e) {
@@ -203,6 +418,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        invalidateMessageConfigCache(mc -> mc.getChannelId() == channelId && (Strings.isNullOrEmpty(name) || name.equals(mc.getName())));
         BotMetrics.databaseTimer("deleteAllMessageConfigForChannel", stopwatch.elapsed());
     }
 
@@ -247,6 +463,12 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Optional<MessageDataDTO> getMessageData(long channelId, long messageId) {
+        if (messageDataWriteBehindBuffer != null) {
+            Optional<MessageDataDTO> pendingMessageData = messageDataWriteBehindBuffer.get(channelId, messageId);
+            if (pendingMessageData.isPresent()) {
+                return pendingMessageData;
+            }
+        }
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         try (Connection con = databaseConnector.getConnection()) {
@@ -270,12 +492,14 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Set<Long> getAllActiveMessageIdsForConfig(@NonNull UUID configUUID) {
+        final List<MessageDataDTO> pendingMessageData = getPendingMessageData(md -> configUUID.equals(md.getConfigUUID()));
         Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement = con.prepareStatement("SELECT DISTINCT MD.MESSAGE_ID FROM MESSAGE_DATA MD WHERE MD.CONFIG_ID = ? AND MD.MARKED_DELETED is null")) {
                 preparedStatement.setObject(1, configUUID);
                 ResultSet resultSet = preparedStatement.executeQuery();
                 final ImmutableSet.Builder<Long> resultBuilder = ImmutableSet.builder();
+                pendingMessageData.forEach(md -> resultBuilder.add(md.getMessageId()));
                 while (resultSet.next()) {
                     resultBuilder.add(resultSet.getLong("MESSAGE_ID"));
                 }
@@ -290,6 +514,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public void markMessageDataAsDeleted(long channelId, long messageId) {
+        discardPendingMessageData(md -> md.getChannelId() == channelId && md.getMessageId() == messageId);
         Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement = con.prepareStatement("UPDATE MESSAGE_DATA SET MARKED_DELETED = ?  WHERE CHANNEL_ID = ? AND MESSAGE_ID = ?")) {
@@ -304,24 +529,9 @@ public class PersistenceManagerImpl implements PersistenceManager {
         }
     }
 
-    private void queryGauge(String name, String query, DataSource dataSource, Set<Tag> tags) {
-        ToDoubleFunction<DataSource> totalRows = ds -> {
-            try (Connection conn = ds.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(query);
-                 ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1);
-            } catch (SQLException ignored) {
-                return 0;
-            }
-        };
-
-        Gauge.builder(name, dataSource, totalRows).tags(tags)
-                .register(globalRegistry);
-    }
-
     @Override
     public void deleteStateForMessage(long channelId, long messageId) {
+        discardPendingMessageData(md -> md.getChannelId() == channelId && md.getMessageId() == messageId);
         Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM MESSAGE_DATA WHERE CHANNEL_ID = ? AND MESSAGE_ID = ?")) {
@@ -337,6 +547,8 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Set<Long> deleteMessageDataForChannel(long channelId, String name) {
+        final List<MessageDataDTO> discardedMessageData = discardPendingMessageData(md -> md.getChannelId() == channelId &&
+                (Strings.isNullOrEmpty(name) || getMessageConfig(md.getConfigUUID()).map(MessageConfigDTO::getName).filter(name::equals).isPresent()));
         Stopwatch stopwatch = Stopwatch.createStarted();
         final ImmutableSet<Long> messageIds;
         try (Connection con = databaseConnector.getConnection()) {
@@ -354,6 +566,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
                 }
                 ResultSet resultSet = preparedStatement.executeQuery();
                 final ImmutableSet.Builder<Long> messageIdBuilder = ImmutableSet.builder();
+                discardedMessageData.forEach(md -> messageIdBuilder.add(md.getMessageId()));
                 while (resultSet.next()) {
                     messageIdBuilder.add(resultSet.getLong("MESSAGE_ID"));
                 }
@@ -389,6 +602,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public void saveMessageData(@NonNull MessageDataDTO messageData) {
+        discardPendingMessageData(md -> md.getChannelId() == messageData.getChannelId() && md.getMessageId() == messageData.getMessageId());
         Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement =
@@ -409,12 +623,63 @@ public class PersistenceManagerImpl implements PersistenceManager {
         BotMetrics.databaseTimer("saveMessageData", stopwatch.elapsed());
     }
 
+    @Override
+    public void upsertMessageData(@NonNull MessageDataDTO messageData) {
+        if (messageDataWriteBehindBuffer != null) {
+            messageDataWriteBehindBuffer.add(messageData);
+            return;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        upsertMessageDataBatch(List.of(messageData));
+        BotMetrics.databaseTimer("upsertMessageData", stopwatch.elapsed());
+    }
+
+    private void upsertMessageDataBatch(List<MessageDataDTO> messageDataList) {
+        try (Connection con = databaseConnector.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = con.prepareStatement(UPSERT_MESSAGE_DATA_SQL)) {
+                final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                for (MessageDataDTO messageData : messageDataList) {
+                    preparedStatement.setObject(1, messageData.getConfigUUID());
+                    preparedStatement.setObject(2, messageData.getGuildId());
+                    preparedStatement.setObject(3, messageData.getChannelId());
+                    preparedStatement.setLong(4, messageData.getMessageId());
+                    preparedStatement.setString(5, messageData.getCommandId());
+                    preparedStatement.setString(6, messageData.getStateDataClassId());
+                    preparedStatement.setString(7, messageData.getStateData());
+                    preparedStatement.setTimestamp(8, now);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+            con.commit();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<MessageDataDTO> getPendingMessageData(Predicate<MessageDataDTO> filter) {
+        if (messageDataWriteBehindBuffer == null) {
+            return List.of();
+        }
+        return messageDataWriteBehindBuffer.getPending(filter);
+    }
+
+    private List<MessageDataDTO> discardPendingMessageData(Predicate<MessageDataDTO> filter) {
+        if (messageDataWriteBehindBuffer == null) {
+            return List.of();
+        }
+        return messageDataWriteBehindBuffer.discard(filter);
+    }
+
     @Override
     public Set<Long> getAllGuildIds() {
+        final List<MessageDataDTO> pendingMessageData = getPendingMessageData(md -> md.getGuildId() != null);
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement = con.prepareStatement("SELECT DISTINCT GUILD_ID FROM MESSAGE_DATA MC WHERE MC.GUILD_ID IS NOT NULL")) {
                 ResultSet resultSet = preparedStatement.executeQuery();
                 final ImmutableSet.Builder<Long> resultBuilder = ImmutableSet.builder();
+                pendingMessageData.forEach(md -> resultBuilder.add(md.getGuildId()));
                 while (resultSet.next()) {
                     resultBuilder.add(resultSet.getLong("GUILD_ID"));
                 }
@@ -427,6 +692,12 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Optional<ChannelConfigDTO> getChannelConfig(long channelId, @NonNull String configClassId) {
+        final ChannelConfigKey cacheKey = new ChannelConfigKey(channelId, USER_ID_NULL_PLACEHOLDER, configClassId);
+        final Optional<ChannelConfigDTO> cachedChannelConfigDTO = channelConfigCache.getIfPresent(cacheKey);
+        if (cachedChannelConfigDTO != null) {
+            return cachedChannelConfigDTO;
+        }
+        final long generation = channelConfigGeneration.get();
         Stopwatch stopwatch = Stopwatch.createStarted();
 
         try (Connection con = databaseConnector.getConnection()) {
@@ -438,10 +709,9 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
                 BotMetrics.databaseTimer("getChannelConfig", stopwatch.elapsed());
 
-                if (channelConfigDTO == null) {
-                    return Optional.empty();
-                }
-                return Optional.of(channelConfigDTO);
+                final Optional<ChannelConfigDTO> result = Optional.ofNullable(channelConfigDTO);
+                cacheChannelConfig(cacheKey, result, generation);
+                return result;
             }
         } catch (Exception e) {
             throw new IllegalStateException(e);
@@ -450,8 +720,14 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
     @Override
     public @NonNull Optional<ChannelConfigDTO> getUserChannelConfig(long channelId, long userId, @NonNull String configClassId) {
-        Stopwatch stopwatch = Stopwatch.createStarted();
         Preconditions.checkArgument(!Objects.equals(userId, USER_ID_NULL_PLACEHOLDER), "The userId is not to be allowed to be %d".formatted(USER_ID_NULL_PLACEHOLDER));
+        final ChannelConfigKey cacheKey = new ChannelConfigKey(channelId, userId, configClassId);
+        final Optional<ChannelConfigDTO> cachedChannelConfigDTO = channelConfigCache.getIfPresent(cacheKey);
+        if (cachedChannelConfigDTO != null) {
+            return cachedChannelConfigDTO;
+        }
+        final long generation = channelConfigGeneration.get();
+        Stopwatch stopwatch = Stopwatch.createStarted();
 
         try (Connection con = databaseConnector.getConnection()) {
             try (PreparedStatement preparedStatement = con.prepareStatement("SELECT CONFIG_ID, CHANNEL_ID, GUILD_ID, USER_ID, COMMAND_ID, CONFIG_CLASS_ID, CONFIG, CONFIG_NAME FROM CHANNEL_CONFIG CC WHERE CC.USER_ID = ? AND CC.CHANNEL_ID = ? AND CC.CONFIG_CLASS_ID = ?")) {
@@ -463,10 +739,9 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
                 BotMetrics.databaseTimer("getUserChannelConfig", stopwatch.elapsed());
 
-                if (channelConfigDTO == null) {
-                    return Optional.empty();
-                }
-                return Optional.of(channelConfigDTO);
+                final Optional<ChannelConfigDTO> result = Optional.ofNullable(channelConfigDTO);
+                cacheChannelConfig(cacheKey, result, generation);
+                return result;
             }
         } catch (Exception e) {
             throw new IllegalStateException(e);
@@ -512,6 +787,9 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        invalidateChannelConfigCache(new ChannelConfigKey(channelConfigDTO.getChannelId(),
+                channelConfigDTO.getUserId() == null ? USER_ID_NULL_PLACEHOLDER : channelConfigDTO.getUserId(),
+                channelConfigDTO.getConfigClassId()));
         BotMetrics.databaseTimer("saveChannelConfig", stopwatch.elapsed());
     }
 
@@ -537,6 +815,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        invalidateChannelConfigCache(event.getChildrenChannelId());
         BotMetrics.databaseTimer("copyChannelConfig", stopwatch.elapsed());
     }
 
@@ -553,6 +832,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        invalidateChannelConfigCache(new ChannelConfigKey(channelId, USER_ID_NULL_PLACEHOLDER, configClassId));
         BotMetrics.databaseTimer("deleteChannelConfig", stopwatch.elapsed());
     }
 
@@ -571,6 +851,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        invalidateChannelConfigCache(new ChannelConfigKey(channelId, userId, configClassId));
         BotMetrics.databaseTimer("deleteUserChannelConfig", stopwatch.elapsed());
     }
 
@@ -586,6 +867,7 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        invalidateChannelConfigCache(channelId);
         BotMetrics.databaseTimer("deleteAllChannelConfig", stopwatch.elapsed());
     }
 
@@ -605,11 +887,16 @@ public class PersistenceManagerImpl implements PersistenceManager {
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        invalidateMessageConfigCache(configUUID);
         BotMetrics.databaseTimer("deleteMessageConfig", stopwatch.elapsed());
     }
 
     @Override
     public Optional<MessageConfigDTO> getNewestMessageDataInChannel(long channelId, LocalDateTime since, Set<String> commandIds) {
+        //a pending message data gets the creation date of its flush, so it is newer than since
+        final Long[] pendingMessageIds = getPendingMessageData(md -> md.getChannelId() == channelId).stream()
+                .map(MessageDataDTO::getMessageId)
+                .toArray(Long[]::new);
         Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
             final String sql = """
@@ -619,12 +906,14 @@ public class PersistenceManagerImpl implements PersistenceManager {
                     WHERE MD.CHANNEL_ID = ?
                     AND MD.CREATION_DATE < ?
                     AND MD.COMMAND_ID = ANY (?) AND MD.MARKED_DELETED is null
+                    AND NOT (MD.MESSAGE_ID = ANY (?))
                     order by MD.CREATION_DATE desc
                     """;
             try (PreparedStatement preparedStatement = con.prepareStatement(sql)) {
                 preparedStatement.setLong(1, channelId);
                 preparedStatement.setTimestamp(2, Timestamp.valueOf(since));
                 preparedStatement.setObject(3, commandIds.toArray(new String[0]));
+                preparedStatement.setObject(4, pendingMessageIds);
                 preparedStatement.setMaxRows(1);
                 ResultSet resultSet = preparedStatement.executeQuery();
                 MessageConfigDTO messageConfigDTO = transformResultSet2MessageConfigDTO(resultSet);
@@ -730,6 +1019,10 @@ public class PersistenceManagerImpl implements PersistenceManager {
         }
     }
 
+    /**
+     * Marks the data of the guilds in batches of db.guildMarkDelete.batchSize guilds, each batch in its own transaction.
+     * The marked guilds are recorded, so a restart continues with the guilds that are not yet marked.
+     */
     @Override
     public long markDeleteAllForGuild(List<Long> guildIds) {
         if (guildIds == null || guildIds.isEmpty()) {
@@ -738,7 +1031,33 @@ public class PersistenceManagerImpl implements PersistenceManager {
 
         long totalMarked = 0L;
         Stopwatch stopwatch = Stopwatch.createStarted();
+        final Set<Long> alreadyMarkedGuildIds = getMarkedDeletedGuildIds();
+        final List<Long> guildIdsToMark = guildIds.stream()
+                .filter(g -> !alreadyMarkedGuildIds.contains(g))
+                .distinct()
+                .toList();
+        guildMarkDeleteRemaining.set(guildIdsToMark.size());
+        final int batchSize = io.avaje.config.Config.getInt("db.guildMarkDelete.batchSize", 100);
+        for (List<Long> batch : Lists.partition(guildIdsToMark, batchSize)) {
+            discardPendingMessageData(md -> md.getGuildId() != null && batch.contains(md.getGuildId()));
+            totalMarked += markDeleteGuildBatch(batch);
+            guildMarkDeleteRemaining.addAndGet(-batch.size());
+            BotMetrics.incrementMarkDeleteGuilds(batch.size());
+            invalidateMessageConfigCache(mc -> mc.getGuildId() != null && batch.contains(mc.getGuildId()));
+        }
+        if (guildIdsToMark.size() < guildIds.size()) {
+            log.info("skipped {} already marked guilds", guildIds.size() - guildIdsToMark.size());
+        }
+        BotMetrics.databaseTimer("markDeleteAllForGuild", stopwatch.elapsed());
+        return totalMarked;
+    }
+
+    private long markDeleteGuildBatch(List<Long> guildIds) {
+        long totalMarked = 0L;
+        long markedMessageConfigs = 0L;
+        Stopwatch stopwatch = Stopwatch.createStarted();
         try (Connection con = databaseConnector.getConnection()) {
+            con.setAutoCommit(false);
             final LocalDateTime markedAsDeletedTime = LocalDateTime.now();
             final String inList = guildIds.stream().map(Object::toString).collect(Collectors.joining(","));
             Stopwatch messageConfigStopwatch = Stopwatch.createStarted();
@@ -749,7 +1068,8 @@ public class PersistenceManagerImpl implements PersistenceManager {
                     """
                     + inList + ");")) {
                 preparedStatement.setObject(1, markedAsDeletedTime);
-                totalMarked += preparedStatement.executeUpdate();
+                markedMessageConfigs = preparedStatement.executeUpdate();
+                totalMarked += markedMessageConfigs;
                 BotMetrics.databaseTimer("markDeleteAllForGuild-messageConfig", messageConfigStopwatch.elapsed());
             }
 
@@ -774,45 +1094,88 @@ public class PersistenceManagerImpl implements PersistenceManager {
                 totalMarked += preparedStatement.executeUpdate();
                 BotMetrics.databaseTimer("markDeleteAllForGuild-channelConfig", channelConfigStopwatch.elapsed());
             }
+
+            try (PreparedStatement preparedStatement = con.prepareStatement("MERGE INTO GUILD_MARKED_DELETED(GUILD_ID, MARKED_DELETED) KEY(GUILD_ID) VALUES (?, ?)")) {
+                for (Long guildId : guildIds) {
+                    preparedStatement.setLong(1, guildId);
+                    preparedStatement.setObject(2, markedAsDeletedTime);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+            con.commit();
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
-        BotMetrics.databaseTimer("markDeleteAllForGuild", stopwatch.elapsed());
+        databaseStatistics.add(DatabaseStatistics.CONFIG_DELETED_COUNT, markedMessageConfigs);
+        BotMetrics.databaseTimer("markDeleteAllForGuild-batch", stopwatch.elapsed());
         return totalMarked;
     }
 
+    private Set<Long> getMarkedDeletedGuildIds() {
+        try (Connection con = databaseConnector.getConnection()) {
+            try (PreparedStatement preparedStatement = con.prepareStatement("SELECT GUILD_ID FROM GUILD_MARKED_DELETED")) {
+                ResultSet resultSet = preparedStatement.executeQuery();
+                final ImmutableSet.Builder<Long> resultBuilder = ImmutableSet.builder();
+                while (resultSet.next()) {
+                    resultBuilder.add(resultSet.getLong("GUILD_ID"));
+                }
+                return resultBuilder.build();
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the marks of the guild in chunks of db.guildMarkDelete.undoChunkSize rows, each chunk in its own transaction.
+     * The guild is removed from GUILD_MARKED_DELETED after the last chunk.
+     */
     @Override
     public long undoMarkDelete(long guildId) {
         long totalMarked = 0L;
         Stopwatch stopwatch = Stopwatch.createStarted();
+        final int chunkSize = io.avaje.config.Config.getInt("db.guildMarkDelete.undoChunkSize", 1000);
         try (Connection con = databaseConnector.getConnection()) {
             Stopwatch messageConfigStopwatch = Stopwatch.createStarted();
-
-            try (PreparedStatement preparedStatement = con.prepareStatement("""
-                    UPDATE MESSAGE_CONFIG SET MARKED_DELETED = null
-                    where GUILD_ID = ? and MARKED_DELETED is not null;
-                    """)) {
-                preparedStatement.setLong(1, guildId);
-                totalMarked += preparedStatement.executeUpdate();
-                BotMetrics.databaseTimer("undoMarkDelete-messageConfig", messageConfigStopwatch.elapsed());
-            }
+            final long unmarkedMessageConfigs = undoMarkDeleteInChunks(con, "MESSAGE_CONFIG", guildId, chunkSize);
+            databaseStatistics.add(DatabaseStatistics.CONFIG_DELETED_COUNT, -unmarkedMessageConfigs);
+            totalMarked += unmarkedMessageConfigs;
+            BotMetrics.databaseTimer("undoMarkDelete-messageConfig", messageConfigStopwatch.elapsed());
 
             Stopwatch channelConfigStopwatch = Stopwatch.createStarted();
-            try (PreparedStatement preparedStatement = con.prepareStatement("""
-                    UPDATE CHANNEL_CONFIG SET MARKED_DELETED = null
-                    where GUILD_ID = ? and MARKED_DELETED is not null;
-                    """)) {
+            totalMarked += undoMarkDeleteInChunks(con, "CHANNEL_CONFIG", guildId, chunkSize);
+            BotMetrics.databaseTimer("undoMarkDelete-channelConfig", channelConfigStopwatch.elapsed());
+
+            try (PreparedStatement preparedStatement = con.prepareStatement("DELETE FROM GUILD_MARKED_DELETED WHERE GUILD_ID = ?")) {
                 preparedStatement.setLong(1, guildId);
-                totalMarked += preparedStatement.executeUpdate();
-                BotMetrics.databaseTimer("undoMarkDelete-channelConfig", channelConfigStopwatch.elapsed());
+                preparedStatement.executeUpdate();
             }
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
+        invalidateMessageConfigCache(mc -> mc.getGuildId() != null && mc.getGuildId() == guildId);
         BotMetrics.databaseTimer("undoMarkDelete", stopwatch.elapsed());
         return totalMarked;
     }
 
+    private long undoMarkDeleteInChunks(Connection con, String table, long guildId, int chunkSize) throws SQLException {
+        long totalUnmarked = 0L;
+        try (PreparedStatement preparedStatement = con.prepareStatement("UPDATE " + table + " SET MARKED_DELETED = null where GUILD_ID = ? and MARKED_DELETED is not null FETCH FIRST ? ROWS ONLY")) {
+            int unmarked;
+            do {
+                preparedStatement.setLong(1, guildId);
+                preparedStatement.setInt(2, chunkSize);
+                unmarked = preparedStatement.executeUpdate();
+                totalUnmarked += unmarked;
+            } while (unmarked == chunkSize);
+        }
+        return totalUnmarked;
+    }
+
     private record SavedNamedConfigIdCreationDate(UUID id, String commandId, String name, Timestamp creationDate) {
     }
+
+    private record ChannelConfigKey(long channelId, long userId, String configClassId) {
+    }
 }
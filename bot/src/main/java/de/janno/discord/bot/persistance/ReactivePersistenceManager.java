@@ -0,0 +1,89 @@
+package de.janno.discord.bot.persistance;
+
+import com.google.common.base.Stopwatch;
+import de.janno.discord.bot.BotMetrics;
+import io.avaje.config.Config;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import static io.micrometer.core.instrument.Metrics.globalRegistry;
+
+/**
+ * Non-blocking facade for the {@link PersistenceManager}. The blocking database calls are executed on a dedicated virtual
+ * thread executor and not on the reactor scheduler threads. The number of parallel database calls is limited by
+ * db.reactive.maxConcurrency, calls above the limit wait in a queue.
+ */
+public class ReactivePersistenceManager {
+
+    private static final int MAX_CONCURRENCY = Config.getInt("db.reactive.maxConcurrency", 10);
+    private static final Semaphore PERMITS = new Semaphore(MAX_CONCURRENCY, true);
+    private static final Scheduler DATABASE_SCHEDULER = Schedulers.fromExecutorService(
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-", 0).factory()), "db");
+
+    static {
+        Gauge.builder("db.reactive", PERMITS::getQueueLength).tags(Tags.of("stats", "queue")).register(globalRegistry);
+        Gauge.builder("db.reactive", () -> MAX_CONCURRENCY - PERMITS.availablePermits()).tags(Tags.of("stats", "active")).register(globalRegistry);
+    }
+
+    private final PersistenceManager persistenceManager;
+
+    public ReactivePersistenceManager(@NonNull PersistenceManager persistenceManager) {
+        this.persistenceManager = persistenceManager;
+    }
+
+    /**
+     * Executes the blocking database call on the database executor. The time until a database worker is free and the time
+     * of the call are measured separately. A null result completes the mono empty.
+     */
+    public <T> Mono<T> execute(@NonNull String action, @NonNull Supplier<T> databaseCall) {
+        return Mono.defer(() -> {
+            final Stopwatch queueStopwatch = Stopwatch.createStarted();
+            return Mono.fromCallable(() -> {
+                PERMITS.acquire();
+                try {
+                    BotMetrics.reactiveDatabaseTimer(action, "queue", queueStopwatch.elapsed());
+                    final Stopwatch executionStopwatch = Stopwatch.createStarted();
+                    final T result = databaseCall.get();
+                    BotMetrics.reactiveDatabaseTimer(action, "execution", executionStopwatch.elapsed());
+                    return result;
+                } finally {
+                    PERMITS.release();
+                }
+            }).subscribeOn(DATABASE_SCHEDULER);
+        });
+    }
+
+    private Mono<Void> run(@NonNull String action, @NonNull Runnable databaseCall) {
+        return execute(action, () -> {
+            databaseCall.run();
+            return null;
+        });
+    }
+
+    public Mono<Void> saveMessageConfig(@NonNull MessageConfigDTO messageConfigDTO) {
+        return run("saveMessageConfig", () -> persistenceManager.saveMessageConfig(messageConfigDTO));
+    }
+
+    public Mono<Void> upsertMessageData(@NonNull MessageDataDTO messageDataDTO) {
+        return run("upsertMessageData", () -> persistenceManager.upsertMessageData(messageDataDTO));
+    }
+
+    public Flux<Long> getAllActiveMessageIdsForConfig(@NonNull UUID configUUID) {
+        return execute("getAllActiveMessageIdsForConfig", () -> persistenceManager.getAllActiveMessageIdsForConfig(configUUID))
+                .flatMapIterable(ids -> ids);
+    }
+
+    public Mono<Void> markMessageDataAsDeleted(long channelId, long messageId) {
+        return run("markMessageDataAsDeleted", () -> persistenceManager.markMessageDataAsDeleted(channelId, messageId));
+    }
+}
@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS GUILD_MARKED_DELETED
+(
+    GUILD_ID       BIGINT    NOT NULL,
+    MARKED_DELETED TIMESTAMP NOT NULL,
+    PRIMARY KEY (GUILD_ID)
+);
@@ -17,6 +17,7 @@ import de.janno.discord.bot.dice.image.DiceImageStyle;
 import de.janno.discord.bot.dice.image.DiceStyleAndColor;
 import de.janno.discord.bot.persistance.PersistenceManager;
 import de.janno.discord.bot.persistance.PersistenceManagerImpl;
+import de.janno.discord.bot.persistance.ReactivePersistenceManager;
 import de.janno.evaluator.dice.random.RandomNumberSupplier;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -131,7 +132,7 @@ class FetchCommandMockTest {
         customDiceCommand.createMessageConfig(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), fetchEvent.getUserId(), config)
                 .ifPresent(m -> persistenceManager.saveMessageConfig(m));
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -2L, customDiceCommand.getCommandId(), persistenceManager);
-        MessageDeletionHelper.markAsDeleted(persistenceManager, fetchEvent.getChannelId(), -2).subscribe();
+        MessageDeletionHelper.markAsDeleted(new ReactivePersistenceManager(persistenceManager), fetchEvent.getChannelId(), -2).block();
 
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -1L, customDiceCommand.getCommandId(), persistenceManager);
 
@@ -169,7 +170,7 @@ class FetchCommandMockTest {
         customDiceCommand.createMessageConfig(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), fetchEvent.getUserId(), config)
                 .ifPresent(m -> persistenceManager.saveMessageConfig(m));
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -2L, customDiceCommand.getCommandId(), persistenceManager);
-        MessageDeletionHelper.markAsDeleted(persistenceManager, fetchEvent.getChannelId(), -2).subscribe();
+        MessageDeletionHelper.markAsDeleted(new ReactivePersistenceManager(persistenceManager), fetchEvent.getChannelId(), -2).block();
 
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -1L, customDiceCommand.getCommandId(), persistenceManager);
 
@@ -196,7 +197,7 @@ class FetchCommandMockTest {
         sumCustomSetCommand.createMessageConfig(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), fetchEvent.getUserId(), config)
                 .ifPresent(m -> persistenceManager.saveMessageConfig(m));
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -2L, customDiceCommand.getCommandId(), persistenceManager);
-        MessageDeletionHelper.markAsDeleted(persistenceManager, fetchEvent.getChannelId(), -2).subscribe();
+        MessageDeletionHelper.markAsDeleted(new ReactivePersistenceManager(persistenceManager), fetchEvent.getChannelId(), -2).block();
 
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -1L, customDiceCommand.getCommandId(), persistenceManager);
 
@@ -220,7 +221,7 @@ class FetchCommandMockTest {
         customParameterCommand.createMessageConfig(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), fetchEvent.getUserId(), config)
                 .ifPresent(m -> persistenceManager.saveMessageConfig(m));
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -2L, customDiceCommand.getCommandId(), persistenceManager);
-        MessageDeletionHelper.markAsDeleted(persistenceManager, fetchEvent.getChannelId(), -2).subscribe();
+        MessageDeletionHelper.markAsDeleted(new ReactivePersistenceManager(persistenceManager), fetchEvent.getChannelId(), -2).block();
 
         BaseCommandUtils.createCleanupAndSaveEmptyMessageData(uuid0, fetchEvent.getGuildId(), fetchEvent.getChannelId(), -1L, customDiceCommand.getCommandId(), persistenceManager);
 
@@ -35,7 +35,7 @@ public class LegacyIdHandlerMockTest {
         if (cacheDirectory.exists()) {
             FileUtils.cleanDirectory(cacheDirectory);
         }
-        Config.setProperty("diceEvaluator.cacheSize", "0");
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "0");
     }
 
     @ParameterizedTest
@@ -5,6 +5,7 @@ import au.com.origin.snapshots.junit5.SnapshotExtension;
 import de.janno.discord.bot.ButtonEventAdaptorMock;
 import de.janno.discord.bot.persistance.MessageDataDTO;
 import de.janno.discord.bot.persistance.PersistenceManagerImpl;
+import de.janno.discord.bot.persistance.ReactivePersistenceManager;
 import de.janno.discord.connector.api.MessageState;
 import lombok.NonNull;
 import org.junit.jupiter.api.Test;
@@ -42,7 +43,7 @@ class MessageDeletionHelperTest {
                 .doOnNext(persistenceManager::saveMessageData)
                 .blockLast();
 
-        MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, 1L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
+        MessageDeletionHelper.deleteOldMessageAndData(new ReactivePersistenceManager(persistenceManager), 1L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
 
         assertThat(persistenceManager.getAllActiveMessageIdsForConfig(configUUID)).containsExactly(1L);
         assertThat(buttonEventAdaptorMock.getActions()).containsExactly();
@@ -59,7 +60,7 @@ class MessageDeletionHelperTest {
                 .doOnNext(persistenceManager::saveMessageData)
                 .blockLast();
 
-        MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
+        MessageDeletionHelper.deleteOldMessageAndData(new ReactivePersistenceManager(persistenceManager), 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
 
         assertThat(persistenceManager.getAllActiveMessageIdsForConfig(configUUID)).containsExactlyInAnyOrder(2L, 6L);
         expect.toMatchSnapshot(buttonEventAdaptorMock.getSortedActions());
@@ -77,9 +78,9 @@ class MessageDeletionHelperTest {
                 .doOnNext(persistenceManager::saveMessageData)
                 .blockLast();
 
-        MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).subscribe();
+        MessageDeletionHelper.deleteOldMessageAndData(new ReactivePersistenceManager(persistenceManager), 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).subscribe();
         Thread.sleep(100);
-        MessageDeletionHelper.deleteOldMessageAndData(persistenceManager, 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
+        MessageDeletionHelper.deleteOldMessageAndData(new ReactivePersistenceManager(persistenceManager), 6L, 0L, configUUID, 1L, buttonEventAdaptorMock).block();
         Thread.sleep(200);
 
         assertThat(persistenceManager.getAllActiveMessageIdsForConfig(configUUID)).containsExactlyInAnyOrder(2L, 6L);
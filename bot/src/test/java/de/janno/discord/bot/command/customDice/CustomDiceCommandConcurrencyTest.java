@@ -46,7 +46,7 @@ public class CustomDiceCommandConcurrencyTest {
         if (cacheDirectory.exists()) {
             FileUtils.cleanDirectory(cacheDirectory);
         }
-        Config.setProperty("diceEvaluator.cacheSize", "0");
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "0");
     }
 
 
@@ -62,7 +62,7 @@ public class CustomDiceCommandMockTest {
         if (cacheDirectory.exists()) {
             FileUtils.cleanDirectory(cacheDirectory);
         }
-        Config.setProperty("diceEvaluator.cacheSize", "0");
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "0");
     }
 
     @Test
@@ -168,6 +168,31 @@ public class CustomDiceCommandMockTest {
         expect.toMatchSnapshot(buttonEvent.getSortedActions());
     }
 
+    @Test
+    void roll_stats() {
+        CustomDiceCommand underTest = new CustomDiceCommand(persistenceManager, new CachingDiceEvaluator(new RandomNumberSupplier(0)));
+        CustomDiceConfig config = new CustomDiceConfig(null,
+                ImmutableList.of(new ButtonIdLabelAndDiceExpression("1_button", "Dmg", "3#1d6", false, false, null)),
+                AnswerFormatType.full,
+                AnswerInteractionType.stats,
+                null,
+                Locale.ENGLISH,
+                null,
+                null,
+                new DiceStyleAndColor(DiceImageStyle.none, "none")
+        );
+        ButtonEventAdaptorMockFactory<CustomDiceConfig, StateData> factory = new ButtonEventAdaptorMockFactory<>("custom_dice", underTest, config, persistenceManager, false);
+        ButtonEventAdaptorMock buttonEvent = factory.getButtonClickOnLastButtonMessage("1_button");
+
+        underTest.handleComponentInteractEvent(buttonEvent).block();
+
+        assertThat(buttonEvent.getSortedActions())
+                .filteredOn(a -> a.startsWith("sendMessage: EmbedOrMessageDefinition(title=1d6,"))
+                .singleElement()
+                .asString()
+                .contains("Percentiles");
+    }
+
     @Test
     void roll_diceEvaluator_missingPermission() {
         CustomDiceCommand underTest = new CustomDiceCommand(persistenceManager, new CachingDiceEvaluator(new RandomNumberSupplier(0)));
@@ -550,7 +575,7 @@ public class CustomDiceCommandMockTest {
 
     @Test
     void roll_answerChannelTwice() {
-        Config.setProperty("diceEvaluator.cacheSize", "1");
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "1000");
         CachingDiceEvaluator cachingDiceEvaluator = new CachingDiceEvaluator(new RandomNumberSupplier(0));
         CustomDiceCommand underTest = new CustomDiceCommand(persistenceManager, cachingDiceEvaluator);
 
@@ -52,7 +52,7 @@ public class RerollAnswerHandlerMockTest {
         if (cacheDirectory.exists()) {
             FileUtils.cleanDirectory(cacheDirectory);
         }
-        Config.setProperty("diceEvaluator.cacheSize", "0");
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "0");
     }
 
     @Test
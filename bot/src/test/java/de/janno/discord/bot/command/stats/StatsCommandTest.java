@@ -0,0 +1,52 @@
+package de.janno.discord.bot.command.stats;
+
+import de.janno.discord.bot.dice.DiceStatistics;
+import de.janno.discord.connector.api.message.EmbedOrMessageDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsCommandTest {
+
+    @Test
+    void formatNumber() {
+        assertThat(StatsCommand.formatNumber(7)).isEqualTo("7");
+        assertThat(StatsCommand.formatNumber(-3)).isEqualTo("-3");
+        assertThat(StatsCommand.formatNumber(2.41523)).isEqualTo("2.42");
+    }
+
+    @Test
+    void getSingleExpression() {
+        assertThat(StatsCommand.getSingleExpression("3#1d20+2")).isEqualTo("1d20+2");
+        assertThat(StatsCommand.getSingleExpression("1d20+2")).isEqualTo("1d20+2");
+    }
+
+    @Test
+    void createAnswer() {
+        TreeMap<Double, Long> histogram = new TreeMap<>();
+        histogram.put(1.0, 1L);
+        histogram.put(2.0, 2L);
+        histogram.put(3.0, 1L);
+        DiceStatistics.Statistics statistics = new DiceStatistics.Statistics(4, 0, 2, 0.71, 1, 3, histogram, false);
+
+        EmbedOrMessageDefinition res = StatsCommand.createAnswer("1d3", statistics, Locale.ENGLISH);
+
+        assertThat(res.getTitle()).isEqualTo("1d3");
+        assertThat(res.getDescriptionOrContent()).isEqualTo("Rolls: 4\nMean: 2, standard deviation: 0.71\nMin: 1, max: 3");
+        assertThat(res.getFields()).containsExactly(new EmbedOrMessageDefinition.Field("Percentiles", "5%: 1, 25%: 1, 50%: 2, 75%: 2, 95%: 3", false));
+        assertThat(res.getImage()).isNotNull();
+    }
+
+    @Test
+    void createAnswer_noNumericResult() {
+        DiceStatistics.Statistics statistics = new DiceStatistics.Statistics(0, 100, 0, 0, 0, 0, new TreeMap<>(), false);
+
+        EmbedOrMessageDefinition res = StatsCommand.createAnswer("1d[a/b]", statistics, Locale.ENGLISH);
+
+        assertThat(res.getDescriptionOrContent()).isEqualTo("The expression has no numeric result, there is no distribution to show");
+        assertThat(res.getImage()).isNull();
+    }
+}
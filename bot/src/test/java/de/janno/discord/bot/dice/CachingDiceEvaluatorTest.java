@@ -0,0 +1,126 @@
+package de.janno.discord.bot.dice;
+
+import io.avaje.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingDiceEvaluatorTest {
+
+    @AfterEach
+    void cleanup() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "0");
+    }
+
+    @Test
+    void canonicalize() {
+        assertThat(CachingDiceEvaluator.canonicalize(" 2d6+3 ")).isEqualTo("2d6+3");
+        assertThat(CachingDiceEvaluator.canonicalize("2d6+3\n")).isEqualTo("2d6+3");
+        assertThat(CachingDiceEvaluator.canonicalize("2d6 + 3")).isEqualTo("2d6+3");
+        assertThat(CachingDiceEvaluator.canonicalize("1D20 + 3")).isEqualTo("1d20+3");
+        assertThat(CachingDiceEvaluator.canonicalize("4D6K3 - 1")).isEqualTo("4d6k3-1");
+        assertThat(CachingDiceEvaluator.canonicalize("1 2")).isEqualTo("1 2");
+        assertThat(CachingDiceEvaluator.canonicalize("1d[Head/Tail]")).isEqualTo("1d[Head/Tail]");
+        assertThat(CachingDiceEvaluator.canonicalize("'A a'")).isEqualTo("'A a'");
+    }
+
+    @Test
+    void get_canonicalExpression() {
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+
+        RollerOrError withWhitespace = underTest.get("1d6 + 2 ");
+        RollerOrError upperCase = underTest.get("1D6+2");
+        RollerOrError canonical = underTest.get("1d6+2");
+
+        assertThat(withWhitespace.isValid()).isTrue();
+        assertThat(withWhitespace.getExpression()).isEqualTo("1d6+2");
+        assertThat(upperCase.getExpression()).isEqualTo("1d6+2");
+        assertThat(canonical.getExpression()).isEqualTo("1d6+2");
+    }
+
+    @Test
+    void weight() {
+        RollerOrError valid = new RollerOrError("1d6", null, true, null, null);
+        RollerOrError invalid = new RollerOrError("1w6", null, false, "error", "context");
+
+        assertThat(CachingDiceEvaluator.weight("1d6", valid)).isEqualTo(70);
+        assertThat(CachingDiceEvaluator.weight("1w6", invalid)).isEqualTo(75);
+        assertThat(CachingDiceEvaluator.weight("1d6+1d6+1d6", valid)).isGreaterThan(CachingDiceEvaluator.weight("1d6", valid));
+    }
+
+    @Test
+    void resizeKeepsEntries() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "10000");
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+        underTest.get("1d6");
+        underTest.get("2d6");
+        assertThat(underTest.getCacheSize()).isEqualTo(2);
+
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "20000");
+
+        assertThat(underTest.getCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    void hottestExpressions_onlyValid() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "10000");
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+        underTest.get("1d6");
+        underTest.get("2d6");
+        underTest.get("1w3");
+
+        assertThat(underTest.getHottestExpressions(10)).containsExactlyInAnyOrder("1d6", "2d6");
+        assertThat(underTest.getHottestExpressions(1)).hasSizeLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void warmUp() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "10000");
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+
+        underTest.warmUp(List.of("1d6", "2d6", "1w3"), 2);
+
+        assertThat(underTest.getCacheSize()).isEqualTo(3);
+        assertThat(underTest.getHottestExpressions(10)).containsExactlyInAnyOrder("1d6", "2d6");
+        assertThat(underTest.get("2d6").isValid()).isTrue();
+    }
+
+    @Test
+    void validate_notInRollerCache() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "10000");
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+
+        RollerOrError incomplete = underTest.validate("2d6+");
+        RollerOrError invalid = underTest.validate("1w3");
+
+        assertThat(incomplete.isValid()).isFalse();
+        assertThat(invalid.isValid()).isFalse();
+        assertThat(invalid.getErrorMessage()).isNotBlank();
+        assertThat(underTest.validate("2d6+1").isValid()).isTrue();
+        assertThat(underTest.validate("2d6+1").getRoller()).isNull();
+        assertThat(underTest.getCacheSize()).isEqualTo(0);
+    }
+
+    @Test
+    void validate_usesExistingRoller() {
+        Config.setProperty("diceEvaluator.cacheMaxWeight", "10000");
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl);
+        RollerOrError roller = underTest.get("1d6");
+
+        assertThat(underTest.validate("1d6 ")).isSameAs(roller);
+    }
+
+    @Test
+    void needsTrialRoll() {
+        assertThat(CachingDiceEvaluator.needsTrialRoll("2d6+3", 1000)).isFalse();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("1d20 + 1d8 - 2", 1000)).isFalse();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("5", 1000)).isFalse();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("600d6+600d6", 1000)).isTrue();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("1d0", 1000)).isTrue();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("3d6>4c", 1000)).isTrue();
+        assertThat(CachingDiceEvaluator.needsTrialRoll("val('$1', 1d6)", 1000)).isTrue();
+    }
+}
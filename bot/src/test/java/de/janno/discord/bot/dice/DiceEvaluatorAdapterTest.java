@@ -1,11 +1,15 @@
 package de.janno.discord.bot.dice;
 
+import de.janno.discord.bot.command.AnswerFormatType;
+import de.janno.discord.bot.command.RollAnswer;
 import de.janno.evaluator.dice.ExpressionPosition;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -36,4 +40,58 @@ class DiceEvaluatorAdapterTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void getBatchExpression() {
+        assertThat(DiceEvaluatorAdapter.getBatchExpression("6#1d20+5")).contains(new DiceEvaluatorAdapter.BatchExpression(6, "1d20+5"));
+        assertThat(DiceEvaluatorAdapter.getBatchExpression(" 2#1d6\n+1")).contains(new DiceEvaluatorAdapter.BatchExpression(2, "1d6\n+1"));
+        assertThat(DiceEvaluatorAdapter.getBatchExpression("1d20+5")).isEmpty();
+        assertThat(DiceEvaluatorAdapter.getBatchExpression("#1d20")).isEmpty();
+    }
+
+    @Test
+    void answerBatchRoll() {
+        DiceEvaluatorAdapter underTest = new DiceEvaluatorAdapter(new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl));
+
+        RollAnswer res = underTest.answerRollWithGivenLabel("3#1d6+1", "Attack", false, AnswerFormatType.full, null, Locale.ENGLISH);
+
+        assertThat(res.getErrorMessage()).isNull();
+        assertThat(res.getExpression()).isEqualTo("3#1d6+1");
+        assertThat(res.getExpressionLabel()).isEqualTo("Attack");
+        assertThat(res.getImage()).isNull();
+        assertThat(res.getMultiRollResults()).extracting(RollAnswer.RollResults::getResult).containsExactly("7", "7", "7");
+        assertThat(res.getMultiRollResults()).extracting(RollAnswer.RollResults::getExpression).allMatch(e -> e.matches("[1-3]: .*"));
+    }
+
+    @Test
+    void answerBatchRoll_multipleResults() {
+        DiceEvaluatorAdapter underTest = new DiceEvaluatorAdapter(new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl));
+
+        RollAnswer res = underTest.answerRollWithGivenLabel("25#1d20,1d6", null, false, AnswerFormatType.full, null, Locale.ENGLISH);
+
+        assertThat(res.getErrorMessage()).isNull();
+        assertThat(res.getMultiRollResults()).hasSize(25);
+        assertThat(res.getMultiRollResults().getFirst().getExpression()).isEqualTo("1: 1d20,1d6");
+        assertThat(res.getMultiRollResults().getFirst().getResult()).isEqualTo("20, 6");
+    }
+
+    @Test
+    void answerBatchRoll_invalidCount() {
+        DiceEvaluatorAdapter underTest = new DiceEvaluatorAdapter(new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl));
+
+        RollAnswer res = underTest.answerRollWithGivenLabel("26#1d6", null, false, AnswerFormatType.full, null, Locale.ENGLISH);
+
+        assertThat(res.getErrorMessage()).isEqualTo("The number of rolls before `#` must be between 1 and 25");
+    }
+
+    @Test
+    void validateDiceExpression_batch() {
+        DiceEvaluatorAdapter underTest = new DiceEvaluatorAdapter(new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl));
+
+        assertThat(underTest.validateDiceExpression("6#1d20", "help", Locale.ENGLISH)).isEmpty();
+        assertThat(underTest.validateDiceExpression("0#1d20", "help", Locale.ENGLISH)).isPresent();
+        assertThat(underTest.validateDiceExpression("6#1w20", "help", Locale.ENGLISH)).isPresent();
+        assertThat(underTest.shortValidateDiceExpressionWitOptionalLabel("6#1d20@Attack", Locale.ENGLISH)).isEqualTo(Optional.empty());
+        assertThat(underTest.isValidExpression("6#1d20")).isTrue();
+        assertThat(underTest.isValidExpression("100#1d20")).isFalse();
+    }
+}
@@ -0,0 +1,78 @@
+package de.janno.discord.bot.dice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiceExpressionSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeAndRead() throws IOException {
+        DiceExpressionSnapshot underTest = new DiceExpressionSnapshot(tempDir.resolve("snapshot.bin"));
+
+        underTest.write(List.of("1d6", "2d6+3", "val('$1', 1d6)\n'$1'+'$1'", "1d6@Grün"));
+
+        assertThat(underTest.read()).containsExactly("1d6", "2d6+3", "val('$1', 1d6)\n'$1'+'$1'", "1d6@Grün");
+    }
+
+    @Test
+    void write_replacesOldSnapshot() throws IOException {
+        DiceExpressionSnapshot underTest = new DiceExpressionSnapshot(tempDir.resolve("snapshot.bin"));
+
+        underTest.write(List.of("1d6"));
+        underTest.write(List.of("2d6"));
+
+        assertThat(underTest.read()).containsExactly("2d6");
+        assertThat(tempDir.resolve("snapshot.bin.tmp")).doesNotExist();
+    }
+
+    @Test
+    void read_missingFile() {
+        assertThat(new DiceExpressionSnapshot(tempDir.resolve("missing.bin")).read()).isEmpty();
+    }
+
+    @Test
+    void read_corruptFile() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        Files.writeString(file, "not a snapshot");
+
+        assertThat(new DiceExpressionSnapshot(file).read()).isEmpty();
+    }
+
+    @Test
+    void read_invalidCount() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        writeContent(file, 1, Integer.MAX_VALUE);
+
+        assertThat(new DiceExpressionSnapshot(file).read()).isEmpty();
+    }
+
+    @Test
+    void read_invalidLength() throws IOException {
+        Path file = tempDir.resolve("snapshot.bin");
+        writeContent(file, 1, 2, Integer.MAX_VALUE, 0);
+        assertThat(new DiceExpressionSnapshot(file).read()).isEmpty();
+
+        writeContent(file, 1, 1, -1);
+        assertThat(new DiceExpressionSnapshot(file).read()).isEmpty();
+    }
+
+    private static void writeContent(Path file, int... values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package de.janno.discord.bot.dice;
+
+import io.avaje.config.Config;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiceStatisticsTest {
+
+    DiceStatistics underTest;
+
+    @BeforeEach
+    void setup() {
+        Config.setProperty("diceEvaluator.stats.timeoutMs", "10000");
+        underTest = new DiceStatistics(new CachingDiceEvaluator((minExcl, maxIncl) -> maxIncl));
+    }
+
+    @AfterEach
+    void cleanup() {
+        Config.setProperty("diceEvaluator.stats.timeoutMs", "2000");
+        Config.setProperty("diceEvaluator.stats.maxRolls", "100000");
+    }
+
+    @Test
+    void getStatistics_2d6() {
+        DiceStatistics.Statistics res = underTest.getStatistics(underTest.getRollerOrError("2d6"));
+
+        assertThat(res.rolls()).isEqualTo(100_000);
+        assertThat(res.nonNumeric()).isZero();
+        assertThat(res.stoppedByTime()).isFalse();
+        assertThat(res.mean()).isCloseTo(7, Offset.offset(0.1));
+        assertThat(res.standardDeviation()).isCloseTo(2.415, Offset.offset(0.1));
+        assertThat(res.min()).isEqualTo(2);
+        assertThat(res.max()).isEqualTo(12);
+        assertThat(res.histogram()).hasSize(11);
+        assertThat(res.histogram().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(100_000);
+        assertThat(res.percentile(0.5)).isEqualTo(7);
+    }
+
+    @Test
+    void getStatistics_notChunkSize() {
+        Config.setProperty("diceEvaluator.stats.maxRolls", "1234");
+
+        DiceStatistics.Statistics res = underTest.getStatistics(underTest.getRollerOrError("1d6"));
+
+        assertThat(res.rolls()).isEqualTo(1234);
+        assertThat(res.stoppedByTime()).isFalse();
+    }
+
+    @Test
+    void getStatistics_cachedByCanonicalExpression() {
+        DiceStatistics.Statistics first = underTest.getStatistics(underTest.getRollerOrError("1d20"));
+        DiceStatistics.Statistics second = underTest.getStatistics(underTest.getRollerOrError(" 1d20 "));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void getStatistics_stoppedByTimeNotCached() {
+        Config.setProperty("diceEvaluator.stats.timeoutMs", "0");
+
+        DiceStatistics.Statistics first = underTest.getStatistics(underTest.getRollerOrError("1d8"));
+        DiceStatistics.Statistics second = underTest.getStatistics(underTest.getRollerOrError("1d8"));
+
+        assertThat(first.stoppedByTime()).isTrue();
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    void getStatistics_nonNumeric() {
+        Config.setProperty("diceEvaluator.stats.maxRolls", "1000");
+
+        DiceStatistics.Statistics res = underTest.getStatistics(underTest.getRollerOrError("1d[abc/cde]"));
+
+        assertThat(res.rolls()).isZero();
+        assertThat(res.nonNumeric()).isEqualTo(1000);
+        assertThat(res.histogram()).isEmpty();
+    }
+
+    @Test
+    void percentile() {
+        TreeMap<Double, Long> histogram = new TreeMap<>();
+        histogram.put(1.0, 10L);
+        histogram.put(2.0, 80L);
+        histogram.put(3.0, 10L);
+        DiceStatistics.Statistics statistics = new DiceStatistics.Statistics(100, 0, 2, 0.45, 1, 3, histogram, false);
+
+        assertThat(statistics.percentile(0.05)).isEqualTo(1);
+        assertThat(statistics.percentile(0.1)).isEqualTo(1);
+        assertThat(statistics.percentile(0.5)).isEqualTo(2);
+        assertThat(statistics.percentile(0.95)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,32 @@
+package de.janno.discord.bot.dice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollCostTest {
+
+    @Test
+    void estimate() {
+        assertThat(RollCost.estimate("1d6")).isEqualTo(RollCost.LOW);
+        assertThat(RollCost.estimate("2d20k1+5")).isEqualTo(RollCost.LOW);
+        assertThat(RollCost.estimate("2000d6")).isEqualTo(RollCost.MEDIUM);
+        assertThat(RollCost.estimate("100x(" + "(".repeat(20) + "1000d6" + ")".repeat(20) + ")")).isEqualTo(RollCost.MEDIUM);
+        assertThat(RollCost.estimate("99999d99999")).isEqualTo(RollCost.HIGH);
+    }
+
+    @Test
+    void ofDuration() {
+        assertThat(RollCost.ofDuration(Duration.ofNanos(500))).isEqualTo(RollCost.LOW);
+        assertThat(RollCost.ofDuration(Duration.ofMillis(2))).isEqualTo(RollCost.MEDIUM);
+        assertThat(RollCost.ofDuration(Duration.ofMillis(50))).isEqualTo(RollCost.HIGH);
+    }
+
+    @Test
+    void atLeast() {
+        assertThat(RollCost.LOW.atLeast(RollCost.MEDIUM)).isEqualTo(RollCost.MEDIUM);
+        assertThat(RollCost.HIGH.atLeast(RollCost.MEDIUM)).isEqualTo(RollCost.HIGH);
+    }
+}
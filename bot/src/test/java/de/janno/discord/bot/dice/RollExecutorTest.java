@@ -0,0 +1,93 @@
+package de.janno.discord.bot.dice;
+
+import de.janno.evaluator.dice.ExpressionException;
+import io.avaje.config.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RollExecutorTest {
+
+    @AfterEach
+    void cleanup() {
+        Config.setProperty("diceEvaluator.rollBudget.timeoutMs", "3000");
+        Config.setProperty("diceEvaluator.rollBudget.high.threads", "1");
+        Config.setProperty("diceEvaluator.rollBudget.high.queueSize", "10");
+    }
+
+    @Test
+    void execute() throws ExpressionException {
+        RollExecutor underTest = new RollExecutor();
+
+        assertThat(underTest.execute(RollCost.LOW, () -> Thread.currentThread().getName())).startsWith("roll-low-");
+    }
+
+    @Test
+    void execute_cooperativeCancellation() {
+        Config.setProperty("diceEvaluator.rollBudget.timeoutMs", "50");
+        RollExecutor underTest = new RollExecutor();
+
+        assertThatThrownBy(() -> underTest.execute(RollCost.MEDIUM, () -> {
+            //like a number supplier that is called for each die
+            while (true) {
+                RollExecutor.checkBudget();
+            }
+        }))
+                .isInstanceOf(RollBudgetExceededException.class)
+                .extracting(e -> ((RollBudgetExceededException) e).getReason())
+                .isEqualTo(RollBudgetExceededException.Reason.TIMEOUT);
+    }
+
+    @Test
+    void execute_rejectedIfQueueIsFull() throws Exception {
+        Config.setProperty("diceEvaluator.rollBudget.high.threads", "1");
+        Config.setProperty("diceEvaluator.rollBudget.high.queueSize", "1");
+        RollExecutor underTest = new RollExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RollExecutor.RollCall<Integer> blockingRoll = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        };
+
+        CompletableFuture<Integer> running = CompletableFuture.supplyAsync(() -> execute(underTest, blockingRoll));
+        started.await();
+        CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> execute(underTest, blockingRoll));
+        while (underTest.getQueueSize(RollCost.HIGH) == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> underTest.execute(RollCost.HIGH, () -> 1))
+                .isInstanceOf(RollBudgetExceededException.class)
+                .extracting(e -> ((RollBudgetExceededException) e).getReason())
+                .isEqualTo(RollBudgetExceededException.Reason.REJECTED);
+        assertThat(underTest.execute(RollCost.LOW, () -> 2)).isEqualTo(2);
+
+        release.countDown();
+        assertThat(running.join()).isEqualTo(1);
+        assertThat(queued.join()).isEqualTo(1);
+    }
+
+    private static Integer execute(RollExecutor rollExecutor, RollExecutor.RollCall<Integer> rollCall) {
+        try {
+            return rollExecutor.execute(RollCost.HIGH, rollCall);
+        } catch (ExpressionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void checkBudget_outsideOfRoll() {
+        RollExecutor.checkBudget();
+    }
+}
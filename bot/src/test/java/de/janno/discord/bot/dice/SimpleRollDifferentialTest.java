@@ -0,0 +1,69 @@
+package de.janno.discord.bot.dice;
+
+import de.janno.evaluator.dice.ExpressionException;
+import de.janno.evaluator.dice.RollResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Only expressions that can't fail in a roll are classified as simple, because they are rolled without trial roll and
+ * budget
+ */
+class SimpleRollDifferentialTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1d20!", "1d6!!", "2d6>3", "3d6>4c", "d%", "d6", "2d20k1+d4", "1d0", "0d6", "4d6k0", "4d6r1",
+            "600d6+600d6", "1d[Head/Tail]", "val('$1', 1d6)", "2d6*3", "(2d6+1)"})
+    void otherExpressionsAreNotSimple(String expression) {
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> minExcl + 1);
+
+        assertThat(underTest.get(expression).getCost()).isNotEqualTo(RollCost.SIMPLE);
+    }
+
+    @Test
+    void simpleExpressionsAreRolled() throws ExpressionException {
+        final Random random = new Random(42);
+        CachingDiceEvaluator underTest = new CachingDiceEvaluator((minExcl, maxIncl) -> random.nextInt(minExcl + 1, maxIncl + 1));
+        Random expressionRandom = new Random(1);
+
+        for (int i = 0; i < 500; i++) {
+            String expression = randomSimpleExpression(expressionRandom);
+            RollerOrError rollerOrError = underTest.get(expression);
+            assertThat(rollerOrError.getCost()).as(expression).isEqualTo(RollCost.SIMPLE);
+            assertThat(rollerOrError.isValid()).as(expression).isTrue();
+
+            RollResult rollResult = underTest.roll(rollerOrError, List.of());
+
+            assertThat(rollResult.getRolls()).as(expression).hasSize(1);
+            assertThat(DiceStatistics.getNumericValue(rollResult)).as(expression).isPresent();
+        }
+    }
+
+    private static String randomSimpleExpression(Random random) {
+        StringBuilder expression = new StringBuilder();
+        int terms = random.nextInt(1, 4);
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                expression.append(random.nextBoolean() ? " " : "")
+                        .append(random.nextBoolean() ? "+" : "-")
+                        .append(random.nextBoolean() ? " " : "");
+            }
+            if (random.nextInt(4) == 0) {
+                expression.append(random.nextInt(0, 20));
+            } else {
+                int numberOfDice = random.nextInt(1, 10);
+                expression.append(numberOfDice).append("d").append(random.nextInt(1, 101));
+                if (random.nextInt(4) == 0) {
+                    expression.append(random.nextBoolean() ? "k" : "l").append(random.nextInt(1, numberOfDice + 1));
+                }
+            }
+        }
+        return expression.toString();
+    }
+}
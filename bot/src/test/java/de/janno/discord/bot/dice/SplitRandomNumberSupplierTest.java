@@ -0,0 +1,94 @@
+package de.janno.discord.bot.dice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SplitRandomNumberSupplierTest {
+
+    /**
+     * Chi-square statistic of the observed counts against an equal distribution
+     */
+    private static double chiSquare(AtomicLongArray counts, long total) {
+        double expected = (double) total / counts.length();
+        double chiSquare = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            double diff = counts.get(i) - expected;
+            chiSquare += diff * diff / expected;
+        }
+        return chiSquare;
+    }
+
+    @Test
+    void nextInt_range() {
+        SplitRandomNumberSupplier underTest = new SplitRandomNumberSupplier("L64X128MixRandom");
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(underTest.nextInt(0, 6)).isBetween(1, 6);
+            assertThat(underTest.nextInt(-3, 3)).isBetween(-2, 3);
+            assertThat(underTest.nextInt(0, 1)).isEqualTo(1);
+            assertThat(underTest.nextInt(Integer.MAX_VALUE - 2, Integer.MAX_VALUE)).isBetween(Integer.MAX_VALUE - 1, Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void uniformDistribution_parallel() throws Exception {
+        SplitRandomNumberSupplier underTest = new SplitRandomNumberSupplier("L64X128MixRandom");
+        final int sides = 20;
+        final int threads = 8;
+        final int rollsPerThread = 100_000;
+        AtomicLongArray counts = new AtomicLongArray(sides);
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executorService.submit(() -> {
+                    for (int i = 0; i < rollsPerThread; i++) {
+                        counts.incrementAndGet(underTest.nextInt(0, sides) - 1);
+                        if (i == rollsPerThread / 2) {
+                            underTest.reseed();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        //19 degrees of freedom, the critical value for p=0.001 is 43.82
+        assertThat(chiSquare(counts, (long) threads * rollsPerThread)).isLessThan(43.82);
+    }
+
+    @Test
+    void threadsUseDifferentGenerators() throws Exception {
+        SplitRandomNumberSupplier underTest = new SplitRandomNumberSupplier("L64X128MixRandom");
+        List<Integer> first = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            first.add(underTest.nextInt(0, 1_000_000));
+        }
+        List<Integer> second = new ArrayList<>();
+        Thread thread = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 20; i++) {
+                second.add(underTest.nextInt(0, 1_000_000));
+            }
+        });
+        thread.join();
+
+        assertThat(second).isNotEqualTo(first);
+    }
+
+    @Test
+    void notSplittable() {
+        assertThatThrownBy(() -> new SplitRandomNumberSupplier("Random"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
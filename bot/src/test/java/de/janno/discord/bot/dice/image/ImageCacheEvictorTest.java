@@ -0,0 +1,160 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageCacheEvictorTest {
+
+    private static final String FOLDER_A = "d6_dots_white";
+    private static final String FOLDER_B = "d6_dots_black_and_gold";
+
+    @TempDir
+    Path root;
+
+    private static String hashName(String name) {
+        return Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString();
+    }
+
+    private void put(ImageStore imageStore, ImageCacheEvictor underTest, String folder, String name) throws IOException {
+        imageStore.put(folder, hashName(name), name, new byte[100]);
+        underTest.add(folder, hashName(name), 100);
+    }
+
+    @Test
+    void evictIfOverBudget_folder() throws IOException {
+        FileImageStore imageStore = new FileImageStore(root, List.of(FOLDER_A, FOLDER_B));
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A, FOLDER_B), 10_000, 300);
+        underTest.load();
+        put(imageStore, underTest, FOLDER_A, "a1");
+        put(imageStore, underTest, FOLDER_A, "a2");
+        put(imageStore, underTest, FOLDER_A, "a3");
+        put(imageStore, underTest, FOLDER_B, "b1");
+        underTest.evictIfOverBudget();
+        assertThat(underTest.getEvictions()).isZero();
+
+        put(imageStore, underTest, FOLDER_A, "a4");
+        underTest.evictIfOverBudget();
+
+        //down to 90% of the folder budget
+        assertThat(underTest.getEvictions()).isEqualTo(2);
+        assertThat(underTest.getBytes()).isEqualTo(300);
+        assertThat(underTest.getEntries()).isEqualTo(3);
+        assertThat(underTest.getHashNames(FOLDER_B)).containsExactly(hashName("b1"));
+        assertThat(imageStore.get(FOLDER_A, hashName("a1"))).isNull();
+        assertThat(imageStore.get(FOLDER_A, hashName("a2"))).isNull();
+        assertThat(imageStore.get(FOLDER_A, hashName("a3"))).isNotNull();
+        assertThat(imageStore.get(FOLDER_A, hashName("a4"))).isNotNull();
+        assertThat(root.resolve(FOLDER_A).resolve(FileImageStore.CACHE_INDEX_FILE)).hasContent("""
+                a3;%s.png
+                a4;%s.png
+                """.formatted(hashName("a3"), hashName("a4")));
+    }
+
+    @Test
+    void evictIfOverBudget_total() throws IOException {
+        FileImageStore imageStore = new FileImageStore(root, List.of(FOLDER_A, FOLDER_B));
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A, FOLDER_B), 300, 10_000);
+        underTest.load();
+        put(imageStore, underTest, FOLDER_A, "a1");
+        put(imageStore, underTest, FOLDER_B, "b1");
+        put(imageStore, underTest, FOLDER_A, "a2");
+        underTest.recordUse(FOLDER_A, hashName("a1"));
+        put(imageStore, underTest, FOLDER_B, "b2");
+
+        underTest.evictIfOverBudget();
+
+        //a1 was used after a2
+        assertThat(underTest.getHashNames(FOLDER_A)).containsExactly(hashName("a1"));
+        assertThat(underTest.getHashNames(FOLDER_B)).containsExactly(hashName("b2"));
+        assertThat(underTest.getEvictions()).isEqualTo(2);
+        assertThat(imageStore.get(FOLDER_B, hashName("b1"))).isNull();
+        assertThat(imageStore.get(FOLDER_A, hashName("a2"))).isNull();
+    }
+
+    @Test
+    void load_lastModifiedIsLastUse() throws IOException {
+        FileImageStore imageStore = new FileImageStore(root, List.of(FOLDER_A));
+        imageStore.put(FOLDER_A, hashName("new"), "new", new byte[100]);
+        imageStore.put(FOLDER_A, hashName("old"), "old", new byte[100]);
+        Files.setLastModifiedTime(root.resolve(FOLDER_A).resolve(hashName("old") + ".png"), FileTime.fromMillis(1000));
+
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+
+        underTest.load();
+        assertThat(underTest.getBytes()).isEqualTo(200);
+        underTest.evictIfOverBudget();
+
+        assertThat(underTest.getHashNames(FOLDER_A)).containsExactly(hashName("new"));
+        assertThat(imageStore.get(FOLDER_A, hashName("old"))).isNull();
+    }
+
+    @Test
+    void evictIfOverBudget_pack() throws IOException {
+        PackImageStore imageStore = new PackImageStore(root, List.of(FOLDER_A));
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 250);
+        underTest.load();
+        put(imageStore, underTest, FOLDER_A, "a1");
+        put(imageStore, underTest, FOLDER_A, "a2");
+        put(imageStore, underTest, FOLDER_A, "a3");
+
+        underTest.evictIfOverBudget();
+
+        assertThat(underTest.getHashNames(FOLDER_A)).containsExactlyInAnyOrder(hashName("a2"), hashName("a3"));
+        assertThat(imageStore.get(FOLDER_A, hashName("a1"))).isNull();
+        assertThat(imageStore.getEntries(FOLDER_A)).isEqualTo(2);
+
+        //images with the same last use minute are evicted in the order they were written
+        ImageCacheEvictor reloaded = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+        reloaded.load();
+        reloaded.evictIfOverBudget();
+        assertThat(reloaded.getHashNames(FOLDER_A)).containsExactly(hashName("a3"));
+    }
+
+    @Test
+    void persistUses_file() throws IOException {
+        FileImageStore imageStore = new FileImageStore(root, List.of(FOLDER_A));
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+        underTest.load();
+        put(imageStore, underTest, FOLDER_A, "used");
+        put(imageStore, underTest, FOLDER_A, "unused");
+        Files.setLastModifiedTime(root.resolve(FOLDER_A).resolve(hashName("used") + ".png"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(root.resolve(FOLDER_A).resolve(hashName("unused") + ".png"), FileTime.fromMillis(2000));
+
+        underTest.recordUse(FOLDER_A, hashName("used"));
+        underTest.persistUses();
+
+        ImageCacheEvictor reloaded = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+        reloaded.load();
+        reloaded.evictIfOverBudget();
+        assertThat(reloaded.getHashNames(FOLDER_A)).containsExactly(hashName("used"));
+    }
+
+    @Test
+    void persistUses_pack() throws IOException {
+        PackImageStore imageStore = new PackImageStore(root, List.of(FOLDER_A));
+        ImageCacheEvictor underTest = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+        underTest.load();
+        put(imageStore, underTest, FOLDER_A, "used");
+        put(imageStore, underTest, FOLDER_A, "unused");
+        imageStore.setLastUsed(FOLDER_A, Map.of(hashName("used"), 60_000L, hashName("unused"), 120_000L));
+
+        underTest.recordUse(FOLDER_A, hashName("used"));
+        underTest.persistUses();
+
+        ImageCacheEvictor reloaded = new ImageCacheEvictor(imageStore, List.of(FOLDER_A), 10_000, 150);
+        reloaded.load();
+        reloaded.evictIfOverBudget();
+        assertThat(reloaded.getHashNames(FOLDER_A)).containsExactly(hashName("used"));
+    }
+}
@@ -0,0 +1,244 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImagePackTest {
+
+    @TempDir
+    Path folder;
+
+    private static byte[] key(int i) {
+        return Hashing.sha256().hashInt(i).asBytes();
+    }
+
+    private static byte[] data(int i) {
+        return "image %d".formatted(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void putAndGet() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.put(key(2), data(2));
+
+            assertThat(underTest.get(key(1))).isEqualTo(data(1));
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.get(key(3))).isNull();
+            assertThat(underTest.getEntries()).isEqualTo(2);
+            assertThat(underTest.getDeadBytes()).isZero();
+        }
+    }
+
+    @Test
+    void put_existingKeyIsNotWrittenAgain() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            long packBytes = underTest.getPackBytes();
+
+            underTest.put(key(1), data(1));
+
+            assertThat(underTest.getPackBytes()).isEqualTo(packBytes);
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void reopen() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+        }
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isEqualTo(data(1));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void setLastUsed_reopenAndCompact() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.put(key(2), data(2));
+            underTest.setLastUsed(key(1), 90_000);
+        }
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.compact();
+            assertThat(underTest.getRecords()).filteredOn(r -> Arrays.equals(r.key(), key(1)))
+                    .extracting(ImagePack.StoredRecord::lastUsed)
+                    .containsExactly(60_000L);
+        }
+    }
+
+    @Test
+    void open_truncateTornRecord() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+        }
+        long packSize = Files.size(folder.resolve(ImagePack.PACK_FILE));
+        Files.write(folder.resolve(ImagePack.PACK_FILE), new byte[]{0x52, 0x45, 0x43, 0x31, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isEqualTo(data(1));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+        assertThat(Files.size(folder.resolve(ImagePack.PACK_FILE))).isEqualTo(packSize);
+    }
+
+    @Test
+    void open_rebuildMissingIndex() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.put(key(2), data(2));
+        }
+        Files.delete(folder.resolve(ImagePack.INDEX_FILE));
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isEqualTo(data(1));
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.getEntries()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void open_rebuildCorruptIndex() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+        }
+        byte[] index = Files.readAllBytes(folder.resolve(ImagePack.INDEX_FILE));
+        Arrays.fill(index, 0, 4, (byte) 0);
+        Files.write(folder.resolve(ImagePack.INDEX_FILE), index);
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isEqualTo(data(1));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void put_resizeIndex() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            for (int i = 0; i < 2000; i++) {
+                underTest.put(key(i), data(i));
+            }
+            assertThat(underTest.getEntries()).isEqualTo(2000);
+        }
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.getEntries()).isEqualTo(2000);
+            for (int i = 0; i < 2000; i++) {
+                assertThat(underTest.get(key(i))).isEqualTo(data(i));
+            }
+        }
+        assertThat(folder.resolve(ImagePack.INDEX_FILE + ".resize")).doesNotExist();
+    }
+
+    @Test
+    void compact() throws IOException {
+        byte[] replacedKey = key(1);
+        byte[] samePrefixKey = key(1);
+        samePrefixKey[31]++;
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(replacedKey, data(1));
+            underTest.put(key(2), data(2));
+            //a key with the same prefix replaces the index entry
+            underTest.put(samePrefixKey, data(3));
+            assertThat(underTest.getDeadBytes()).isPositive();
+            long packBytes = underTest.getPackBytes();
+
+            underTest.compact();
+
+            assertThat(underTest.getDeadBytes()).isZero();
+            assertThat(underTest.getPackBytes()).isLessThan(packBytes);
+            assertThat(underTest.get(replacedKey)).isNull();
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.get(samePrefixKey)).isEqualTo(data(3));
+        }
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.getEntries()).isEqualTo(2);
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.get(samePrefixKey)).isEqualTo(data(3));
+        }
+    }
+
+    @Test
+    void remove() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.put(key(2), data(2));
+
+            underTest.remove(key(1));
+
+            assertThat(underTest.get(key(1))).isNull();
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+            assertThat(underTest.getDeadBytes()).isPositive();
+            assertThat(underTest.getRecords()).extracting(ImagePack.StoredRecord::key).containsExactly(key(2));
+        }
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isNull();
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void remove_putAgain() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.remove(key(1));
+
+            underTest.put(key(1), data(2));
+
+            assertThat(underTest.get(key(1))).isEqualTo(data(2));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void remove_rebuildIndex() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            underTest.put(key(1), data(1));
+            underTest.put(key(2), data(2));
+            underTest.remove(key(1));
+        }
+        Files.delete(folder.resolve(ImagePack.INDEX_FILE));
+
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            assertThat(underTest.get(key(1))).isNull();
+            assertThat(underTest.get(key(2))).isEqualTo(data(2));
+            assertThat(underTest.getEntries()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void remove_compact() throws IOException {
+        try (ImagePack underTest = ImagePack.open(folder)) {
+            for (int i = 0; i < 10; i++) {
+                underTest.put(key(i), data(i));
+            }
+            for (int i = 0; i < 5; i++) {
+                underTest.remove(key(i));
+            }
+
+            underTest.compact();
+
+            assertThat(underTest.getDeadBytes()).isZero();
+            assertThat(underTest.getEntries()).isEqualTo(5);
+            assertThat(underTest.getRecords()).extracting(ImagePack.StoredRecord::key)
+                    .containsExactly(key(5), key(6), key(7), key(8), key(9));
+        }
+    }
+}
@@ -91,6 +91,7 @@ class ImageResultCreatorTest {
 
     @AfterEach
     void cleanUp() throws IOException {
+        underTest.awaitFileWrites();
         File cacheDirectory = new File("imageCache/");
         if (cacheDirectory.exists()) {
             FileUtils.cleanDirectory(cacheDirectory);
@@ -274,6 +275,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> res1 = underTest.getImageForRoll(rolls1, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
         assertThat(res1).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile = new File("imageCache/polyhedral_3d_red_and_white/cea2a67e61a8b605c6702aac213960f86922331b5cac795649502b363dde97aa.png");
         assertThat(cacheFile).exists();
         long res1LastModified = cacheFile.lastModified();
@@ -285,6 +287,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> cachedRes1 = underTest.getImageForRoll(rolls2, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
         assertThat(cachedRes1).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile2 = new File("imageCache/polyhedral_3d_red_and_white/cea2a67e61a8b605c6702aac213960f86922331b5cac795649502b363dde97aa.png");
         assertThat(cacheFile2).exists();
         assertThat(cacheFile2.lastModified()).isEqualTo(res1LastModified);
@@ -296,6 +299,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> res2 = underTest.getImageForRoll(rolls3, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
         assertThat(res2).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile3 = new File("imageCache/polyhedral_3d_red_and_white/dbb28d1b4a2eb15d9a4b2301e76f751f0129efe722d94b4551049fc168524162.png");
         assertThat(cacheFile3).exists();
         assertThat(cacheFile3.lastModified()).isNotEqualTo(res1LastModified);
@@ -303,6 +307,45 @@ class ImageResultCreatorTest {
         assertThat(getDataHash(res2)).isEqualTo("beb6e26993ee00f8c4fe5e9fd8f4f39cf0450626bbb25a020d18c22717808fe5");
     }
 
+    @Test
+    void getImageForRoll_memoryCache() throws ExpressionException, IOException {
+        RollResult rolls1 = new DiceEvaluator(new GivenNumberSupplier(1), 1000, 10_000, false).evaluate("1d6");
+        Supplier<? extends InputStream> res1 = underTest.getImageForRoll(rolls1, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
+        assertThat(getDataHash(res1)).isEqualTo("933002493c0ccf2ea6ad67c8656342d3f02642a19a840b032a62346e4a7a048b");
+        assertThat(underTest.getMemoryCacheSize()).isEqualTo(1);
+
+        //the second roll doesn't need the file
+        underTest.awaitFileWrites();
+        FileUtils.cleanDirectory(new File("imageCache/"));
+        RollResult rolls2 = new DiceEvaluator(new GivenNumberSupplier(1), 1000, 10_000, false).evaluate("1d6");
+        Supplier<? extends InputStream> res2 = underTest.getImageForRoll(rolls2, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
+
+        assertThat(new File("imageCache/")).isEmptyDirectory();
+        assertThat(getDataHash(res2)).isEqualTo("933002493c0ccf2ea6ad67c8656342d3f02642a19a840b032a62346e4a7a048b");
+    }
+
+    @Test
+    void getImageForRoll_fileHasAnswerBytes() throws ExpressionException, IOException {
+        RollResult rolls = new DiceEvaluator(new GivenNumberSupplier(3), 1000, 10_000, false).evaluate("2d6");
+        Supplier<? extends InputStream> res = underTest.getImageForRoll(rolls, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
+
+        underTest.awaitFileWrites();
+        File cacheFolder = new File("imageCache/polyhedral_3d_red_and_white/");
+        File[] imageFiles = cacheFolder.listFiles((_, name) -> name.endsWith(".png"));
+        assertThat(imageFiles).hasSize(1);
+        assertThat(cacheFolder.listFiles((_, name) -> name.endsWith(".tmp"))).isEmpty();
+        assertThat(Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(imageFiles[0])).toString()).isEqualTo(getDataHash(res));
+    }
+
+    @Test
+    void getImageForRoll_noMemoryCacheForLargeDiceSets() throws ExpressionException, IOException {
+        RollResult rolls1 = new DiceEvaluator(new GivenNumberSupplier(1), 1000, 10_000, false).evaluate("7d10");
+        Supplier<? extends InputStream> res1 = underTest.getImageForRoll(rolls1, new DiceStyleAndColor(DiceImageStyle.polyhedral_3d, "red_and_white"));
+        assertThat(getDataHash(res1)).isEqualTo("c6ea9275d2ab8391ff4978a4fd8e3f36fa0ef0ab4dc6fa85074a175e2bd307b0");
+
+        assertThat(underTest.getMemoryCacheSize()).isZero();
+    }
+
     @Test
     void getImageForRoll_noCacheForLargeDiceSets() throws ExpressionException, IOException {
         RollResult rolls1 = new DiceEvaluator(new GivenNumberSupplier(1), 1000, 10_000, false).evaluate("7d10");
@@ -326,6 +369,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> res1 = underTest.getImageForRoll(rolls1, new DiceStyleAndColor(DiceImageStyle.fate, "black"));
         assertThat(res1).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile = new File("imageCache/fate_black/9f295c8cb283c4dbc3c58ba29e5b93884bb3f0cb369ca66f3f932220db2fa6bf.png");
         assertThat(cacheFile).exists();
         long res1LastModified = cacheFile.lastModified();
@@ -337,6 +381,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> cachedRes1 = underTest.getImageForRoll(rolls2, new DiceStyleAndColor(DiceImageStyle.fate, "black"));
         assertThat(cachedRes1).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile2 = new File("imageCache/fate_black/9f295c8cb283c4dbc3c58ba29e5b93884bb3f0cb369ca66f3f932220db2fa6bf.png");
         assertThat(cacheFile2).exists();
         assertThat(cacheFile2.lastModified()).isEqualTo(res1LastModified);
@@ -348,6 +393,7 @@ class ImageResultCreatorTest {
         Supplier<? extends InputStream> res2 = underTest.getImageForRoll(rolls3, new DiceStyleAndColor(DiceImageStyle.fate, "black"));
         assertThat(res2).isNotNull();
 
+        underTest.awaitFileWrites();
         File cacheFile3 = new File("imageCache/fate_black/3b1ffd07870d80beda782bd15bd670798617a179419084d5a5206f91c7ce8048.png");
         assertThat(cacheFile3).exists();
         assertThat(cacheFile3.lastModified()).isNotEqualTo(res1LastModified);
@@ -0,0 +1,57 @@
+package de.janno.discord.bot.dice.image;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackImageStoreTest {
+
+    @TempDir
+    Path root;
+
+    private static String hashName(String name) {
+        return Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString();
+    }
+
+    @Test
+    void putAndGet() throws IOException {
+        PackImageStore underTest = new PackImageStore(root, List.of("d6_dots_white"));
+
+        underTest.put("d6_dots_white", hashName("a"), "a", new byte[]{1, 2, 3});
+
+        assertThat(underTest.get("d6_dots_white", hashName("a"))).containsExactly(1, 2, 3);
+        assertThat(underTest.get("d6_dots_white", hashName("b"))).isNull();
+        assertThat(underTest.getEntries("d6_dots_white")).isEqualTo(1);
+    }
+
+    @Test
+    void migrateImageFiles() throws IOException {
+        FileImageStore fileImageStore = new FileImageStore(root, List.of("d6_dots_white"));
+        fileImageStore.put("d6_dots_white", hashName("a"), "a", new byte[]{1, 2, 3});
+        fileImageStore.put("d6_dots_white", hashName("b"), "b", new byte[]{4, 5});
+
+        PackImageStore underTest = new PackImageStore(root, List.of("d6_dots_white"));
+        //before the migration the images are read from the files
+        assertThat(underTest.get("d6_dots_white", hashName("a"))).containsExactly(1, 2, 3);
+        assertThat(underTest.getEntries("d6_dots_white")).isZero();
+
+        underTest.migrate();
+
+        assertThat(underTest.getEntries("d6_dots_white")).isEqualTo(2);
+        assertThat(underTest.get("d6_dots_white", hashName("a"))).containsExactly(1, 2, 3);
+        assertThat(underTest.get("d6_dots_white", hashName("b"))).containsExactly(4, 5);
+        assertThat(root.resolve("d6_dots_white").resolve(hashName("a") + ".png")).doesNotExist();
+        assertThat(root.resolve("d6_dots_white").resolve(FileImageStore.CACHE_INDEX_FILE)).doesNotExist();
+        try (var files = Files.list(root.resolve("d6_dots_white"))) {
+            assertThat(files.map(f -> f.getFileName().toString())).containsExactlyInAnyOrder(ImagePack.PACK_FILE, ImagePack.INDEX_FILE);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.janno.discord.bot.dice.image.provider;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PolyhedralSvgWithColorTest {
+
+    PolyhedralSvgWithColor underTest = new PolyhedralSvgWithColor();
+
+    @Test
+    void getImageFor_cachedFace() {
+        List<BufferedImage> first = underTest.getImageFor(20, 7, "green");
+        List<BufferedImage> second = underTest.getImageFor(20, 7, "green");
+
+        assertThat(second.getFirst()).isSameAs(first.getFirst());
+        assertThat(first.getFirst().getWidth()).isEqualTo(100);
+        assertThat(first.getFirst().getHeight()).isEqualTo(100);
+        assertThat(first.getFirst().getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB_PRE);
+        assertThat(underTest.getFaceCacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    void getImageFor_differentColor() {
+        List<BufferedImage> green = underTest.getImageFor(20, 7, "green");
+        List<BufferedImage> blue = underTest.getImageFor(20, 7, "blue");
+
+        assertThat(blue.getFirst()).isNotSameAs(green.getFirst());
+        assertThat(underTest.getFaceCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    void getImageFor_d100SharesOnesWithD10() {
+        underTest.getImageFor(100, 37, "red");
+        List<BufferedImage> d10 = underTest.getImageFor(10, 7, "red");
+
+        assertThat(underTest.getImageFor(100, 37, "red").get(1)).isSameAs(d10.getFirst());
+        assertThat(underTest.getFaceCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    void getImageForString_cachedFace() {
+        List<BufferedImage> first = underTest.getImageForString(6, " A ", null);
+        List<BufferedImage> second = underTest.getImageForString(6, "A", "red");
+
+        assertThat(second.getFirst()).isSameAs(first.getFirst());
+    }
+
+    @Test
+    void getStandardFaces() {
+        List<PolyhedralSvgWithColor.Face> res = PolyhedralSvgWithColor.getStandardFaces();
+
+        //12 colors with d2, d4, d6, d8, d10 with 0, d12, d20 and the ten d100 tens
+        assertThat(res).hasSize(12 * 73);
+        assertThat(res).contains(new PolyhedralSvgWithColor.Face(100, "00", "red"),
+                new PolyhedralSvgWithColor.Face(100, "90", "cyan"),
+                new PolyhedralSvgWithColor.Face(10, "0", "black"),
+                new PolyhedralSvgWithColor.Face(20, "20", "indigo"));
+    }
+}
@@ -0,0 +1,33 @@
+package de.janno.discord.bot.persistance;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseStatisticsTest {
+
+    @Test
+    void reconcileAndAdd() throws SQLException {
+        DatabaseConnector databaseConnector = new DatabaseConnector("jdbc:h2:mem:" + UUID.randomUUID(), null, null);
+        DatabaseInitiator.initialize(databaseConnector);
+        DatabaseStatistics underTest = new DatabaseStatistics(databaseConnector.getDataSource());
+        underTest.register("test.guild.count", "select count (distinct GUILD_ID) from GUILD_MARKED_DELETED;");
+
+        underTest.add("test.guild.count", 2);
+        underTest.add("test.notRegistered", 2);
+        assertThat(underTest.get("test.guild.count")).isEqualTo(2);
+        assertThat(underTest.get("test.notRegistered")).isEqualTo(0);
+
+        try (Connection connection = databaseConnector.getConnection()) {
+            connection.createStatement().execute("INSERT INTO GUILD_MARKED_DELETED(GUILD_ID, MARKED_DELETED) VALUES (1, CURRENT_TIMESTAMP)");
+        }
+        underTest.reconcile();
+        assertThat(underTest.get("test.guild.count")).isEqualTo(1);
+
+        databaseConnector.dispose();
+    }
+}
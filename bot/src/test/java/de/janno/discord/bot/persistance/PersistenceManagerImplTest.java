@@ -55,11 +55,53 @@ class PersistenceManagerImplTest {
         assertThat(underTest.getMessageData(2L, 5L)).isPresent();
     }
 
+    @Test
+    void upsertMessageData() {
+        UUID uuid = UUID.randomUUID();
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 4L, "testCommand", "testStateClass", "state1"));
+        underTest.saveMessageData(new MessageDataDTO(uuid, 1L, 2L, 5L, "testCommand", "testStateClass", "state1"));
+        underTest.markMessageDataAsDeleted(2L, 5L);
+
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 4L, "testCommand", "testStateClass", "state2"));
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 5L, "testCommand", "testStateClass", "state3"));
+
+        assertThat(underTest.getMessageData(2L, 4L).map(MessageDataDTO::getStateData)).contains("state2");
+        assertThat(underTest.getMessageData(2L, 5L).map(MessageDataDTO::getStateData)).contains("state3");
+        assertThat(underTest.getAllActiveMessageIdsForConfig(uuid)).containsExactlyInAnyOrder(4L, 5L);
+    }
+
     @AfterEach
     void cleanup() {
         io.avaje.config.Config.setProperty("db.deleteMarkMessageDataIntervalInMilliSec", "0");
         io.avaje.config.Config.setProperty("db.deleteMarkMessageDataStartDelayMilliSec", "0");
         io.avaje.config.Config.setProperty("db.delayMessageDataDeletionMs", "0");
+        io.avaje.config.Config.setProperty("db.messageDataWriteBehind.enabled", "false");
+        io.avaje.config.Config.setProperty("db.purge.chunkSize", "1000");
+        io.avaje.config.Config.setProperty("db.purge.maxRowsPerRun", "50000");
+        io.avaje.config.Config.setProperty("db.purge.pauseBetweenChunksMs", "100");
+    }
+
+    @Test
+    void upsertMessageData_writeBehind() {
+        io.avaje.config.Config.setProperty("db.messageDataWriteBehind.enabled", "true");
+        io.avaje.config.Config.setProperty("db.messageDataWriteBehind.flushIntervalMs", "60000");
+        underTest = new PersistenceManagerImpl("jdbc:h2:mem:" + UUID.randomUUID(), null, null);
+        UUID uuid = UUID.randomUUID();
+
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 4L, "testCommand", "testStateClass", "state1"));
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 4L, "testCommand", "testStateClass", "state2"));
+
+        assertThat(underTest.getMessageData(2L, 4L).map(MessageDataDTO::getStateData)).contains("state2");
+        //merged with the pending message data
+        assertThat(underTest.getAllActiveMessageIdsForConfig(uuid)).containsExactly(4L);
+        assertThat(underTest.getAllGuildIds()).containsExactly(1L);
+
+        underTest.deleteStateForMessage(2L, 4L);
+        assertThat(underTest.getMessageData(2L, 4L)).isEmpty();
+
+        underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 2L, 5L, "testCommand", "testStateClass", "state1"));
+        assertThat(underTest.deleteMessageDataForChannel(2L, null)).containsExactly(5L);
+        assertThat(underTest.getMessageData(2L, 5L)).isEmpty();
     }
 
 
@@ -155,6 +197,21 @@ class PersistenceManagerImplTest {
         assertThat(underTest.getMessageConfig(config3)).isPresent();
     }
 
+    @Test
+    void deleteAllMessageConfigForChannel_cachedConfig() {
+        UUID config1 = UUID.randomUUID();
+        UUID config2 = UUID.randomUUID();
+        underTest.saveMessageConfig(new MessageConfigDTO(config1, 1L, 2L, "testCommand", "testConfigClass", "configClass", "name1", null));
+        underTest.saveMessageConfig(new MessageConfigDTO(config2, 1L, 2L, "testCommand", "testConfigClass", "configClass", "name2", null));
+        assertThat(underTest.getMessageConfig(config1)).isPresent();
+        assertThat(underTest.getMessageConfig(config2)).isPresent();
+
+        underTest.deleteAllMessageConfigForChannel(2L, "name1");
+
+        assertThat(underTest.getMessageConfig(config1)).isEmpty();
+        assertThat(underTest.getMessageConfig(config2)).isPresent();
+    }
+
     @Test
     void deleteAllMessageConfigForChannel_name() {
         io.avaje.config.Config.setProperty("db.delayMessageDataDeletionMs", "0");
@@ -457,6 +514,31 @@ class PersistenceManagerImplTest {
         assertThat(underTest.getChannelConfig(2L, "testConfigClass2")).isPresent();
     }
 
+    @Test
+    void deleteOldMessageDataThatAreMarked_chunked() throws InterruptedException {
+        UUID configUUID = UUID.randomUUID();
+        for (long i = 1; i <= 10; i++) {
+            underTest.saveMessageData(new MessageDataDTO(configUUID, 1L, 1L, i, "testCommand", "testConfigClass", "configClass"));
+        }
+        underTest.saveMessageData(new MessageDataDTO(UUID.randomUUID(), 2L, 2L, 11L, "testCommand", "testConfigClass", "configClass"));
+        underTest.markDeleteAllForGuild(List.of(1L));
+        Thread.sleep(20);
+        io.avaje.config.Config.setProperty("db.delayMessageDataDeletionMs", "1");
+        io.avaje.config.Config.setProperty("db.purge.chunkSize", "3");
+        io.avaje.config.Config.setProperty("db.purge.maxRowsPerRun", "7");
+        io.avaje.config.Config.setProperty("db.purge.pauseBetweenChunksMs", "0");
+
+        underTest.deleteOldMessageDataThatAreMarked();
+        assertThat(underTest.getPurgeBacklog("MESSAGE_DATA")).isEqualTo(3);
+
+        underTest.deleteOldMessageDataThatAreMarked();
+        assertThat(underTest.getPurgeBacklog("MESSAGE_DATA")).isEqualTo(0);
+        for (long i = 1; i <= 10; i++) {
+            assertThat(underTest.getMessageData(1L, i)).isEmpty();
+        }
+        assertThat(underTest.getMessageData(2L, 11L)).isPresent();
+    }
+
     @Test
     void deleteOldMessageDataThatAreMarked() throws InterruptedException {
         UUID messageData1 = UUID.randomUUID();
@@ -474,6 +556,52 @@ class PersistenceManagerImplTest {
         assertThat(underTest.getMessageData(2L, 5L)).isPresent();
     }
 
+    @Test
+    void markDeleteAllForGuild_batchesAndSkipsMarkedGuilds() {
+        for (long guildId = 1; guildId <= 5; guildId++) {
+            underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), guildId, guildId, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+        }
+        io.avaje.config.Config.setProperty("db.guildMarkDelete.batchSize", "2");
+
+        long firstMarkCount = underTest.markDeleteAllForGuild(List.of(1L, 2L));
+        long secondMarkCount = underTest.markDeleteAllForGuild(List.of(1L, 2L, 3L, 4L, 5L));
+        io.avaje.config.Config.setProperty("db.guildMarkDelete.batchSize", "100");
+
+        assertThat(firstMarkCount).isEqualTo(2);
+        assertThat(secondMarkCount).isEqualTo(3);
+    }
+
+    @Test
+    void deleteGuildMarksWithoutMarkedRows() throws InterruptedException {
+        underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), 1L, 1L, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+        underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), 2L, 2L, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+        underTest.saveMessageData(new MessageDataDTO(UUID.randomUUID(), 2L, 2L, 5L, "testCommand", "testConfigClass", "configClass"));
+        underTest.markDeleteAllForGuild(List.of(1L, 2L));
+        Thread.sleep(20);
+        io.avaje.config.Config.setProperty("db.delayMessageConfigDeletionMs", "1");
+        underTest.deleteOldMessageConfigThatAreMarked();
+
+        underTest.deleteGuildMarksWithoutMarkedRows();
+
+        //guild 2 has still the marked message data
+        underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), 1L, 1L, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+        underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), 2L, 2L, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+        assertThat(underTest.markDeleteAllForGuild(List.of(1L, 2L))).isEqualTo(1);
+    }
+
+    @Test
+    void markDeleteAllForGuild_afterUndo() {
+        underTest.saveMessageConfig(new MessageConfigDTO(UUID.randomUUID(), 1L, 1L, "testCommand", "testConfigClass", "configClass", "name1", 0L));
+
+        long firstMarkCount = underTest.markDeleteAllForGuild(List.of(1L));
+        long undoCount = underTest.undoMarkDelete(1L);
+        long secondMarkCount = underTest.markDeleteAllForGuild(List.of(1L));
+
+        assertThat(firstMarkCount).isEqualTo(1);
+        assertThat(undoCount).isEqualTo(1);
+        assertThat(secondMarkCount).isEqualTo(1);
+    }
+
     @Test
     void undoMarkDelete() throws InterruptedException {
         UUID config1 = UUID.randomUUID();
@@ -0,0 +1,46 @@
+package de.janno.discord.bot.persistance;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactivePersistenceManagerTest {
+    PersistenceManagerImpl persistenceManager;
+    ReactivePersistenceManager underTest;
+
+    @BeforeEach
+    void setup() {
+        persistenceManager = new PersistenceManagerImpl("jdbc:h2:mem:" + UUID.randomUUID(), null, null);
+        underTest = new ReactivePersistenceManager(persistenceManager);
+    }
+
+    @Test
+    void upsertAndMarkAsDeleted() {
+        UUID uuid = UUID.randomUUID();
+        Flux.range(1, 20)
+                .flatMap(i -> underTest.upsertMessageData(new MessageDataDTO(uuid, 1L, 1L, i, "testCommand", "testConfigClass", "configClass")))
+                .blockLast();
+
+        underTest.markMessageDataAsDeleted(1L, 1L).block();
+
+        assertThat(underTest.getAllActiveMessageIdsForConfig(uuid).collectList().block()).hasSize(19).doesNotContain(1L);
+    }
+
+    @Test
+    void execute_runsNotOnCallerThread() {
+        String callerThread = Thread.currentThread().getName();
+
+        String executionThread = underTest.execute("test", () -> Thread.currentThread().getName()).block();
+
+        assertThat(executionThread).isNotEqualTo(callerThread).startsWith("db-");
+    }
+
+    @Test
+    void execute_nullIsEmpty() {
+        assertThat(underTest.execute("test", () -> null).blockOptional()).isEmpty();
+    }
+}
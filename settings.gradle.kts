@@ -3,6 +3,7 @@ include("discord-connector")
 include("discord-connector:api")
 include("discord-connector:jda")
 include("bot")
+include("benchmark")
 
 dependencyResolutionManagement {
     repositories {